@@ -9,8 +9,9 @@ import java.util.Set;
  * 
  * Artifacts are meant to be immutable, therefore new version are created by
  * copying the old one into a builder, which then can be modified.
- * Implementations must provide a copy mechanism by modifying
- * {@link Artifact#copyArtifact(Artifact)} for their sub class.
+ * Implementations must provide a copy mechanism by adding a visit method to
+ * {@link ArtifactVisitor} and {@link Artifact#COPY_VISITOR} for their sub
+ * class.
  * 
  * @author Eric Flindt
  *
@@ -37,6 +38,19 @@ public interface Artifact {
 	 */
 	Set<ArtifactVersion> getOutputs();
 
+	/**
+	 * @return The {@link ArtifactKind} of this artifact
+	 */
+	ArtifactKind kind();
+
+	/**
+	 * Dispatches to the method of the visitor matching the kind of this artifact.
+	 * 
+	 * @param visitor The {@link ArtifactVisitor}
+	 * @return The result of the visit
+	 */
+	<R> R dispatch(ArtifactVisitor<R> visitor);
+
 	/**
 	 * @return Down cast this as a transformation
 	 */
@@ -47,6 +61,13 @@ public interface Artifact {
 	 */
 	Optional<ModelConsumer> asConsumer();
 	
+	/**
+	 * The concrete kinds of artifacts known to the workflow.
+	 */
+	public static enum ArtifactKind {
+		ARTIFACT, TRANSFORMATION, CONSUMER, CO_EVOLUTION_MODEL
+	}
+
 	/**
 	 * This record represents version information for an artifact.
 	 * 
@@ -82,30 +103,51 @@ public interface Artifact {
 	}
 
 	/**
-	 * All sub classes of {@link Artifact} must extend this method to include a
-	 * specific builder for the sub class.
+	 * All sub classes of {@link Artifact} must extend {@link #COPY_VISITOR} to
+	 * include a specific builder for the sub class.
 	 * 
 	 * @param artifact The {@link Artifact} to be copied.
 	 * @return An {@link AbstractArtifactBuilder} with properties of the provided
 	 *         artifact.
 	 */
 	public static AbstractArtifactBuilder<?, ?> copyArtifact(Artifact artifact) {
-		AbstractArtifactBuilder<?, ?> builder;
-		if (artifact instanceof CoEvolutionModel coevm) {
-			builder = CoEvolutionModelImpl.buildCoEvolutionModel(coevm.version())
-				.withChangedArtifact(coevm.getChangedArtifact());
-		} else if (artifact instanceof ModelTransformation t) {
-			builder = TransformationImpl.buildTransformation(t.version()).withTransformation(t.getTransformation());
-		} else if (artifact instanceof ModelConsumer c) {
-			builder = ConsumerImpl.buildConsumer(c.version()).withConsumer(c.getConsumer());
-		} else {
-			builder = ArtifactImpl.buildArtifact(artifact.version());
-		}
+		AbstractArtifactBuilder<?, ?> builder = artifact.dispatch(COPY_VISITOR);
 		artifact.getMetamodels().forEach(builder::withMetamodel);
 		artifact.getInputs().forEach(builder::withInput);
 		artifact.getOutputs().forEach(builder::withOutput);
 		return builder;
 	}
+
+	/**
+	 * Creates the specific builder for each kind of {@link Artifact}.
+	 */
+	static final ArtifactVisitor<AbstractArtifactBuilder<?, ?>> COPY_VISITOR = new ArtifactVisitor<>() {
+
+		@Override
+		public AbstractArtifactBuilder<?, ?> visitArtifact(Artifact artifact) {
+			return ArtifactImpl.buildArtifact(artifact.version());
+		}
+
+		@Override
+		public AbstractArtifactBuilder<?, ?> visitTransformation(ModelTransformation t) {
+			return TransformationImpl.buildTransformation(t.version()).withTransformation(t.getTransformation())
+				.withBulkTransformation(t.getBulkTransformation().orElse(null))
+				.withCostModel(t.getCostModel().orElse(null));
+		}
+
+		@Override
+		public AbstractArtifactBuilder<?, ?> visitConsumer(ModelConsumer c) {
+			return ConsumerImpl.buildConsumer(c.version()).withConsumer(c.getConsumer())
+				.withCostModel(c.getCostModel().orElse(null));
+		}
+
+		@Override
+		public AbstractArtifactBuilder<?, ?> visitCoEvolutionModel(CoEvolutionModel coevm) {
+			return CoEvolutionModelImpl.buildCoEvolutionModel(coevm.version())
+				.withChangedArtifact(coevm.getChangedArtifact());
+		}
+
+	};
 	
 	/**
 	 * @author Eric Flindt
@@ -46,15 +46,24 @@ public class ArtifactImpl implements Artifact {
 		return outputs;
 	}
 
+	@Override
+	public ArtifactKind kind() {
+		return ArtifactKind.ARTIFACT;
+	}
+
+	@Override
+	public <R> R dispatch(ArtifactVisitor<R> visitor) {
+		return visitor.visitArtifact(this);
+	}
+
 	@Override
 	public Optional<ModelTransformation> asTransformation() {
-		return Optional.ofNullable(this).filter(ModelTransformation.class::isInstance)
-			.map(ModelTransformation.class::cast);
+		return Optional.empty();
 	}
 
 	@Override
 	public Optional<ModelConsumer> asConsumer() {
-		return Optional.ofNullable(this).filter(ModelConsumer.class::isInstance).map(ModelConsumer.class::cast);
+		return Optional.empty();
 	}
 
 	@Override
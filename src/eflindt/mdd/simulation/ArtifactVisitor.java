@@ -0,0 +1,19 @@
+package eflindt.mdd.simulation;
+
+/**
+ * A visitor over the concrete kinds of {@link Artifact}. Used to dispatch on
+ * the kind of an artifact without down casting.
+ * 
+ * @param <R> The result type of the visit
+ */
+public interface ArtifactVisitor<R> {
+
+	R visitArtifact(Artifact artifact);
+
+	R visitTransformation(ModelTransformation transformation);
+
+	R visitConsumer(ModelConsumer consumer);
+
+	R visitCoEvolutionModel(CoEvolutionModel coEvolutionModel);
+
+}
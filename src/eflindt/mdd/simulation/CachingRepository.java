@@ -0,0 +1,208 @@
+package eflindt.mdd.simulation;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import eflindt.mdd.simulation.Artifact.ArtifactVersion;
+
+/**
+ * A {@link Repository} that keeps the most recently pulled artifacts of a
+ * backing repository in memory. It is the hot tier in front of a
+ * {@link RepositoryImpl} that keeps its plain artifacts in a
+ * {@link ColdStore}, where each pull reads and decodes an artifact from a file.
+ * With a backing repository that keeps all artifacts on the heap, it only
+ * measures how well the working set of a propagation fits into the cache.
+ * 
+ * Since artifacts are immutable, cached versions
+ * only become stale if the backing repository removes them during a
+ * compaction. Cached versions are checked against the backing repository once
+ * it has removed versions, pushes only need to be forwarded to it.
+ * 
+ * The least recently used artifact is evicted once the maximum size is
+ * reached. Changes pushed through this repository are propagated with this
+ * repository, so that the queries of the propagation are served from the
+ * cache.
+ */
+public class CachingRepository implements Repository {
+
+	/**
+	 * The number of cache hits, misses, evictions and invalidations of removed
+	 * versions since the creation of the repository.
+	 */
+	public static record CacheStatistics(long hits, long misses, long evictions, long invalidations) {
+
+		/**
+		 * @return The ratio of hits to all requests
+		 */
+		public double hitRate() {
+			long requests = hits + misses;
+			return requests == 0 ? 0 : (double) hits / requests;
+		}
+
+	}
+
+	private final Repository backingStore;
+
+	private final Map<ArtifactVersion, Artifact> cache;
+
+	private long hits;
+
+	private long misses;
+
+	private long evictions;
+
+	private long invalidations;
+
+	private long knownRemovals;
+
+	/**
+	 * @param backingStore The {@link Repository} holding all versions
+	 * @param maximumSize  The maximum number of cached artifacts
+	 */
+	public CachingRepository(Repository backingStore, int maximumSize) {
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("Maximum size must be positive but was " + maximumSize);
+		}
+		this.backingStore = backingStore;
+		this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<ArtifactVersion, Artifact> eldest) {
+				if (size() > maximumSize) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+
+		};
+	}
+
+	@Override
+	public synchronized Artifact pull(ArtifactVersion version) {
+		long removals = backingStore.getRemovals();
+		if (removals != knownRemovals) {
+			invalidateRemoved();
+			knownRemovals = removals;
+		}
+		Artifact artifact = cache.get(version);
+		if (artifact != null) {
+			hits++;
+			return artifact;
+		}
+		misses++;
+		artifact = backingStore.pull(version);
+		if (artifact != null) {
+			cache.put(version, artifact);
+		}
+		return artifact;
+	}
+
+	private void invalidateRemoved() {
+		Iterator<ArtifactVersion> versions = cache.keySet().iterator();
+		while (versions.hasNext()) {
+			if (backingStore.pull(versions.next()) == null) {
+				versions.remove();
+				invalidations++;
+			}
+		}
+	}
+
+	@Override
+	public Set<ArtifactVersion> getInstances(ArtifactVersion version) {
+		return backingStore.getInstances(version);
+	}
+
+	@Override
+	public Set<ArtifactVersion> getMetamodels(ArtifactVersion version) {
+		Artifact artifact = version == null ? null : pull(version);
+		return artifact == null ? Collections.emptySet() : artifact.getMetamodels();
+	}
+
+	@Override
+	public Set<ArtifactVersion> getInputs(ArtifactVersion version) {
+		Artifact artifact = version == null ? null : pull(version);
+		return artifact == null ? Collections.emptySet() : artifact.getInputs();
+	}
+
+	@Override
+	public Set<ArtifactVersion> getTransformations(ArtifactVersion version) {
+		return backingStore.getTransformations(version);
+	}
+
+	@Override
+	public Set<ArtifactVersion> getConsumers(ArtifactVersion version) {
+		return backingStore.getConsumers(version);
+	}
+
+	@Override
+	public PropagationPlan getPlan(ArtifactVersion version) {
+		return backingStore.getPlan(version);
+	}
+
+	@Override
+	public long getSequence() {
+		return backingStore.getSequence();
+	}
+
+	@Override
+	public Repository snapshot() {
+		return backingStore.snapshot();
+	}
+
+	@Override
+	public Repository asOf(long sequence) {
+		return backingStore.asOf(sequence);
+	}
+
+	@Override
+	public long getRemovals() {
+		return backingStore.getRemovals();
+	}
+
+	@Override
+	public void push(Artifact a) {
+		Main.onChange(this, commit(a));
+	}
+
+	@Override
+	public ArtifactVersion commit(Artifact a) {
+		return backingStore.commit(a);
+	}
+
+	@Override
+	public void push(Artifact... a) {
+		Arrays.asList(a).forEach(this::push);
+	}
+
+	/**
+	 * @return The {@link CacheStatistics} of this repository
+	 */
+	public synchronized CacheStatistics getStatistics() {
+		return new CacheStatistics(hits, misses, evictions, invalidations);
+	}
+
+	/**
+	 * Logs the {@link CacheStatistics} of this repository.
+	 */
+	public void report() {
+		CacheStatistics statistics = getStatistics();
+		Main.log(String.format("[CACHE] hits=%s; misses=%s; evictions=%s; invalidations=%s; hitRate=%.1f%%",
+			statistics.hits(), statistics.misses(), statistics.evictions(), statistics.invalidations(),
+			statistics.hitRate() * 100));
+	}
+
+	/**
+	 * @return The number of cached artifacts
+	 */
+	public synchronized int size() {
+		return cache.size();
+	}
+
+}
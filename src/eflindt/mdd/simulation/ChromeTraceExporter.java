@@ -0,0 +1,174 @@
+package eflindt.mdd.simulation;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import jdk.jfr.ValueDescriptor;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Converts the {@link PropagationEvents} of a JDK Flight Recorder recording to
+ * the Chrome trace event format, which can be opened in Perfetto or
+ * chrome://tracing. Waves, transformations and verdicts become slices on the
+ * thread that executed them and are connected to their cause with flow arrows,
+ * queries become slices without flows.
+ * 
+ * A recording of any run can be converted with
+ * {@code java eflindt.mdd.simulation.ChromeTraceExporter recording.jfr trace.json}.
+ */
+public class ChromeTraceExporter {
+
+	private static final String PREFIX = "eflindt.mdd.";
+
+	private static record Slice(RecordedEvent event, long id, long parentId, long start, long thread) {}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			Main.log("Usage: ChromeTraceExporter <recording.jfr> <trace.json>");
+			return;
+		}
+		int events = export(Path.of(args[0]), Path.of(args[1]));
+		Main.log(String.format("[TRACE] Wrote %s events to %s", events, args[1]));
+	}
+
+	/**
+	 * Writes the propagation events of the recording as a Chrome trace.
+	 * 
+	 * @param recording The JFR recording
+	 * @param trace     The trace file to write
+	 * @return The number of exported events
+	 * @throws IOException If the recording can't be read or the trace can't be
+	 *                     written
+	 */
+	public static int export(Path recording, Path trace) throws IOException {
+		List<RecordedEvent> events = new ArrayList<>();
+		for (RecordedEvent event : RecordingFile.readAllEvents(recording)) {
+			if (event.getEventType().getName().startsWith(PREFIX)) {
+				events.add(event);
+			}
+		}
+		events.sort(Comparator.comparing(RecordedEvent::getStartTime));
+		Instant origin = events.isEmpty() ? Instant.EPOCH : events.get(0).getStartTime();
+		Map<Long, Slice> slicesById = new HashMap<>();
+		Map<Long, String> threads = new LinkedHashMap<>();
+		List<Slice> slices = new ArrayList<>();
+		for (RecordedEvent event : events) {
+			RecordedThread thread = event.getThread();
+			long tid = thread == null ? 0 : thread.getJavaThreadId();
+			threads.putIfAbsent(tid, thread == null ? "unknown" : thread.getJavaName());
+			Slice slice = new Slice(event, event.hasField("id") ? event.getLong("id") : 0,
+				event.getLong("parentId"), micros(origin, event.getStartTime()), tid);
+			if (slice.id() != 0) {
+				slicesById.put(slice.id(), slice);
+			}
+			slices.add(slice);
+		}
+		try (Writer writer = new BufferedWriter(Files.newBufferedWriter(trace, StandardCharsets.UTF_8))) {
+			writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n");
+			boolean first = true;
+			for (Map.Entry<Long, String> thread : threads.entrySet()) {
+				first = separate(writer, first);
+				writer.write(String.format(Locale.ROOT,
+					"{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":%d,\"args\":{\"name\":%s}}",
+					thread.getKey(), quote(thread.getValue())));
+			}
+			for (Slice slice : slices) {
+				first = separate(writer, first);
+				writeSlice(writer, slice);
+				Slice parent = slicesById.get(slice.parentId());
+				if (slice.id() != 0 && parent != null) {
+					// an arrow from the start of the cause to the start of the effect
+					writer.write(String.format(Locale.ROOT,
+						",\n{\"name\":\"cause\",\"cat\":\"flow\",\"ph\":\"s\",\"id\":%d,\"ts\":%d,\"pid\":1,\"tid\":%d}",
+						slice.id(), parent.start(), parent.thread()));
+					writer.write(String.format(Locale.ROOT,
+						",\n{\"name\":\"cause\",\"cat\":\"flow\",\"ph\":\"f\",\"bp\":\"e\",\"id\":%d,\"ts\":%d,\"pid\":1,\"tid\":%d}",
+						slice.id(), slice.start(), slice.thread()));
+				}
+			}
+			writer.write("\n]}\n");
+		}
+		return slices.size();
+	}
+
+	private static void writeSlice(Writer writer, Slice slice) throws IOException {
+		RecordedEvent event = slice.event();
+		String type = event.getEventType().getName().substring(PREFIX.length());
+		writer.write(String.format(Locale.ROOT,
+			"{\"name\":%s,\"cat\":%s,\"ph\":\"X\",\"ts\":%d,\"dur\":%d,\"pid\":1,\"tid\":%d,\"args\":{",
+			quote(nameOf(type, event)), quote(type), slice.start(), Math.max(1, event.getDuration().toNanos() / 1_000),
+			slice.thread()));
+		boolean first = true;
+		for (ValueDescriptor field : event.getFields()) {
+			Object value = event.getValue(field.getName());
+			if (field.getName().equals("startTime") || field.getName().equals("duration")
+				|| field.getName().equals("eventThread") || field.getName().equals("stackTrace") || value == null) {
+				continue;
+			}
+			first = separate(writer, first);
+			writer.write(quote(field.getName()));
+			writer.write(':');
+			writer.write(value instanceof String s ? quote(s) : String.valueOf(value));
+		}
+		writer.write("}}");
+	}
+
+	private static String nameOf(String type, RecordedEvent event) {
+		return switch (type) {
+			case "Push" -> "push " + event.getString("artifact") + "@" + event.getInt("version");
+			case "Query" -> event.getString("query") + " " + event.getString("artifact") + "@" + event.getInt("version");
+			case "Transformation" -> event.getString("transformation") + "@" + event.getInt("transformationVersion")
+				+ " " + event.getString("input") + "@" + event.getInt("inputVersion");
+			case "ConsumerVerdict" -> event.getString("consumer") + "@" + event.getInt("consumerVersion")
+				+ " " + event.getString("input") + "@" + event.getInt("inputVersion");
+			default -> type;
+		};
+	}
+
+	private static long micros(Instant origin, Instant time) {
+		return Duration.between(origin, time).toNanos() / 1_000;
+	}
+
+	private static boolean separate(Writer writer, boolean first) throws IOException {
+		if (!first) {
+			writer.write(",\n");
+		}
+		return false;
+	}
+
+	private static String quote(String value) {
+		StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '"' -> builder.append("\\\"");
+				case '\\' -> builder.append("\\\\");
+				case '\n' -> builder.append("\\n");
+				default -> {
+					if (c < 0x20) {
+						builder.append(String.format("\\u%04x", (int) c));
+					} else {
+						builder.append(c);
+					}
+				}
+			}
+		}
+		return builder.append('"').toString();
+	}
+
+}
@@ -23,6 +23,16 @@ public class CoEvolutionModelImpl extends ArtifactImpl implements CoEvolutionMod
 		return changedArtifact;
 	}
 
+	@Override
+	public ArtifactKind kind() {
+		return ArtifactKind.CO_EVOLUTION_MODEL;
+	}
+
+	@Override
+	public <R> R dispatch(ArtifactVisitor<R> visitor) {
+		return visitor.visitCoEvolutionModel(this);
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		return super.equals(obj);
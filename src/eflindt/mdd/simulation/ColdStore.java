@@ -0,0 +1,256 @@
+package eflindt.mdd.simulation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+import eflindt.mdd.simulation.Artifact.ArtifactKind;
+import eflindt.mdd.simulation.Artifact.ArtifactVersion;
+
+/**
+ * An append only file of encoded artifacts, so that the models of an ecosystem
+ * don't have to be kept on the heap. Only plain artifacts of kind
+ * {@link ArtifactKind#ARTIFACT} can be written, the behavior of
+ * transformations and consumers can't be encoded.
+ * 
+ * An artifact is read back as a view that only decodes its version right away.
+ * Its meta models, inputs and outputs are decoded when one of them is accessed
+ * for the first time. Reading is thread safe and doesn't block writing.
+ * Removed artifacts are not reclaimed from the file.
+ */
+public class ColdStore implements Closeable {
+
+	private final FileChannel channel;
+
+	// the position of the next encoded artifact
+	private long size;
+
+	/**
+	 * @param file The file the artifacts are appended to, it is truncated
+	 * @throws IOException If the file can't be opened
+	 */
+	public ColdStore(Path file) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+			StandardOpenOption.READ, StandardOpenOption.WRITE);
+	}
+
+	/**
+	 * @return A {@link ColdStore} writing to a temporary file that is deleted
+	 *         when the store is closed
+	 * @throws IOException If the file can't be created
+	 */
+	public static ColdStore temporary() throws IOException {
+		Path file = Files.createTempFile("mdd-simulation-", ".artifacts");
+		file.toFile().deleteOnExit();
+		return new ColdStore(file) {
+
+			@Override
+			public void close() throws IOException {
+				super.close();
+				Files.deleteIfExists(file);
+			}
+
+		};
+	}
+
+	/**
+	 * @param artifact A plain artifact
+	 * @return The address to read the artifact from
+	 */
+	public long write(Artifact artifact) {
+		if (artifact.kind() != ArtifactKind.ARTIFACT) {
+			throw new IllegalArgumentException(String.format("Only plain artifacts can be encoded but %s is a %s",
+				artifact.version(), artifact.kind()));
+		}
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(buffer)) {
+			// room for the length, which is only known afterwards
+			out.writeInt(0);
+			writeVersion(out, artifact.version());
+			writeVersions(out, artifact.getMetamodels());
+			writeVersions(out, artifact.getInputs());
+			writeVersions(out, artifact.getOutputs());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		ByteBuffer encoded = ByteBuffer.wrap(buffer.toByteArray());
+		encoded.putInt(0, encoded.capacity() - Integer.BYTES);
+		synchronized (this) {
+			long address = size;
+			try {
+				while (encoded.hasRemaining()) {
+					channel.write(encoded, address + encoded.position());
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			size += encoded.capacity();
+			return address;
+		}
+	}
+
+	/**
+	 * @param address An address returned by {@link #write(Artifact)}
+	 * @return A view of the artifact that decodes its dependencies lazily
+	 */
+	public Artifact read(long address) {
+		try {
+			ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+			readFully(length, address);
+			ByteBuffer encoded = ByteBuffer.allocate(length.getInt(0));
+			readFully(encoded, address + Integer.BYTES);
+			encoded.flip();
+			return new ColdArtifact(readVersion(encoded), encoded);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return The number of bytes written so far
+	 */
+	public synchronized long size() {
+		return size;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of file at " + (position + buffer.position()));
+			}
+		}
+	}
+
+	private static void writeVersions(DataOutputStream out, Set<ArtifactVersion> versions) throws IOException {
+		out.writeInt(versions.size());
+		for (ArtifactVersion version : versions) {
+			writeVersion(out, version);
+		}
+	}
+
+	private static void writeVersion(DataOutputStream out, ArtifactVersion version) throws IOException {
+		byte[] name = version.name().getBytes(StandardCharsets.UTF_8);
+		if (name.length > 0xFFFF) {
+			throw new IllegalArgumentException("The name of " + version + " is too long to be encoded");
+		}
+		out.writeShort(name.length);
+		out.write(name);
+		out.writeInt(version.version());
+	}
+
+	private static Set<ArtifactVersion> readVersions(ByteBuffer in) {
+		int count = in.getInt();
+		Set<ArtifactVersion> versions = new HashSet<>(count * 2);
+		for (int i = 0; i < count; i++) {
+			versions.add(readVersion(in));
+		}
+		return versions;
+	}
+
+	private static ArtifactVersion readVersion(ByteBuffer in) {
+		byte[] name = new byte[Short.toUnsignedInt(in.getShort())];
+		in.get(name);
+		return new ArtifactVersion(new String(name, StandardCharsets.UTF_8), in.getInt());
+	}
+
+	/**
+	 * An artifact read from the file that decodes its dependencies when they are
+	 * accessed for the first time.
+	 */
+	private static final class ColdArtifact implements Artifact {
+
+		private final ArtifactVersion version;
+
+		// positioned after the version, released once it has been decoded
+		private ByteBuffer encoded;
+
+		private Artifact decoded;
+
+		private ColdArtifact(ArtifactVersion version, ByteBuffer encoded) {
+			this.version = version;
+			this.encoded = encoded;
+		}
+
+		private synchronized Artifact decoded() {
+			if (decoded == null) {
+				decoded = new ArtifactImpl(version, readVersions(encoded), readVersions(encoded),
+					readVersions(encoded));
+				encoded = null;
+			}
+			return decoded;
+		}
+
+		@Override
+		public ArtifactVersion version() {
+			return version;
+		}
+
+		@Override
+		public Set<ArtifactVersion> getMetamodels() {
+			return decoded().getMetamodels();
+		}
+
+		@Override
+		public Set<ArtifactVersion> getInputs() {
+			return decoded().getInputs();
+		}
+
+		@Override
+		public Set<ArtifactVersion> getOutputs() {
+			return decoded().getOutputs();
+		}
+
+		@Override
+		public ArtifactKind kind() {
+			return ArtifactKind.ARTIFACT;
+		}
+
+		@Override
+		public <R> R dispatch(ArtifactVisitor<R> visitor) {
+			return visitor.visitArtifact(this);
+		}
+
+		@Override
+		public Optional<ModelTransformation> asTransformation() {
+			return Optional.empty();
+		}
+
+		@Override
+		public Optional<ModelConsumer> asConsumer() {
+			return Optional.empty();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o == this || o instanceof Artifact other && version.equals(other.version());
+		}
+
+		@Override
+		public int hashCode() {
+			return version.hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return Main.debug ? decoded().toString() : version.toString();
+		}
+
+	}
+
+}
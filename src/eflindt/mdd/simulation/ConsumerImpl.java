@@ -1,5 +1,6 @@
 package eflindt.mdd.simulation;
 
+import java.util.Optional;
 import java.util.Set;
 import java.util.function.Predicate;
 
@@ -13,22 +14,54 @@ public class ConsumerImpl extends ArtifactImpl implements ModelConsumer {
 
 	private final Predicate<ArtifactVersion> consumer;
 
+	// created once so that dispatching on the cost model does not allocate
+	private final Optional<CostModel> costModel;
+
+	// created once so that down casting does not allocate
+	private final Optional<ModelConsumer> asConsumer = Optional.of(this);
+
 	public ConsumerImpl(ArtifactVersion version, Set<ArtifactVersion> metamodels, Set<ArtifactVersion> inputs,
 		Set<ArtifactVersion> outputs, Predicate<ArtifactVersion> consumer) {
+		this(version, metamodels, inputs, outputs, consumer, null);
+	}
+
+	public ConsumerImpl(ArtifactVersion version, Set<ArtifactVersion> metamodels, Set<ArtifactVersion> inputs,
+		Set<ArtifactVersion> outputs, Predicate<ArtifactVersion> consumer, CostModel costModel) {
 		super(version, metamodels, inputs, outputs);
 		this.consumer = consumer;
+		this.costModel = Optional.ofNullable(costModel);
 	}
 
 	@Override
 	public Predicate<ArtifactVersion> getConsumer() {
 		return consumer;
 	}
+
+	@Override
+	public Optional<CostModel> getCostModel() {
+		return costModel;
+	}
 	
 	@Override
 	public boolean test(ArtifactVersion t) {
 		return consumer.test(t);
 	}
 
+	@Override
+	public ArtifactKind kind() {
+		return ArtifactKind.CONSUMER;
+	}
+
+	@Override
+	public <R> R dispatch(ArtifactVisitor<R> visitor) {
+		return visitor.visitConsumer(this);
+	}
+
+	@Override
+	public Optional<ModelConsumer> asConsumer() {
+		return asConsumer;
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		return super.equals(obj);
@@ -49,6 +82,8 @@ public class ConsumerImpl extends ArtifactImpl implements ModelConsumer {
 
 		private Predicate<ArtifactVersion> consumer;
 
+		private CostModel costModel;
+
 		public ConsumerBuilder(String name) {
 			this.version = new ArtifactVersion(name, 0);
 		}
@@ -62,6 +97,11 @@ public class ConsumerImpl extends ArtifactImpl implements ModelConsumer {
 			return this;
 		}
 
+		public ConsumerBuilder withCostModel(CostModel costModel) {
+			this.costModel = costModel;
+			return this;
+		}
+
 		@Override
 		protected ConsumerBuilder getThis() {
 			return this;
@@ -69,7 +109,7 @@ public class ConsumerImpl extends ArtifactImpl implements ModelConsumer {
 
 		@Override
 		public ModelConsumer build() {
-			return new ConsumerImpl(version, metamodels, inputs, outputs, consumer);
+			return new ConsumerImpl(version, metamodels, inputs, outputs, consumer, costModel);
 		}
 
 	}
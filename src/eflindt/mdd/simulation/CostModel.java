@@ -0,0 +1,91 @@
+package eflindt.mdd.simulation;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+
+import eflindt.mdd.simulation.Artifact.ArtifactVersion;
+
+/**
+ * Describes how long a transformation or consumer takes to process an
+ * artifact, measured in milliseconds of virtual time.
+ */
+@FunctionalInterface
+public interface CostModel {
+
+	/**
+	 * @param input The artifact that is processed
+	 * @return The duration of the processing in milliseconds
+	 */
+	long cost(ArtifactVersion input);
+
+	/**
+	 * @param metamodel The meta model of the processed instances
+	 * @param instances The instances processed in one pass
+	 * @return The duration of the processing in milliseconds, by default the sum
+	 *         of processing each instance on its own
+	 */
+	default long cost(ArtifactVersion metamodel, Set<ArtifactVersion> instances) {
+		long cost = 0;
+		for (ArtifactVersion instance : instances) {
+			cost += cost(instance);
+		}
+		return cost;
+	}
+
+	/**
+	 * @param duration The duration in milliseconds
+	 * @return A {@link CostModel} with the same duration for every artifact
+	 */
+	public static CostModel fixed(long duration) {
+		return input -> duration;
+	}
+
+	/**
+	 * @param mean              The mean duration in milliseconds
+	 * @param standardDeviation The standard deviation in milliseconds
+	 * @param random            The source of randomness, should be seeded to get
+	 *                          reproducible results
+	 * @return A {@link CostModel} with normally distributed durations, negative
+	 *         durations are cut off at zero
+	 */
+	public static CostModel normal(long mean, long standardDeviation, Random random) {
+		return input -> Math.max(0, Math.round(mean + random.nextGaussian() * standardDeviation));
+	}
+
+	/**
+	 * @param fixed   The duration in milliseconds independent of the size
+	 * @param perUnit The duration in milliseconds for each unit of size
+	 * @param size    Determines the size of an artifact
+	 * @return A {@link CostModel} with durations growing linearly with the size
+	 *         of the artifact
+	 */
+	public static CostModel sizeDependent(long fixed, long perUnit, ToLongFunction<ArtifactVersion> size) {
+		return input -> fixed + perUnit * size.applyAsLong(input);
+	}
+
+	/**
+	 * @param setup       The duration in milliseconds of preparing a pass, e.g.
+	 *                    loading the transformation
+	 * @param perInstance The duration in milliseconds for each processed instance
+	 * @return A {@link CostModel} for bulk transformations that pay the setup
+	 *         once per pass, so processing many instances at once is cheaper than
+	 *         processing them one by one
+	 */
+	public static CostModel bulk(long setup, long perInstance) {
+		return new CostModel() {
+
+			@Override
+			public long cost(ArtifactVersion input) {
+				return setup + perInstance;
+			}
+
+			@Override
+			public long cost(ArtifactVersion metamodel, Set<ArtifactVersion> instances) {
+				return setup + perInstance * instances.size();
+			}
+
+		};
+	}
+
+}
@@ -0,0 +1,212 @@
+package eflindt.mdd.simulation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import eflindt.mdd.simulation.Artifact.ArtifactVersion;
+
+/**
+ * A {@link PropagationExecutor} that simulates the execution of steps on a
+ * virtual clock with a fixed number of workers.
+ * 
+ * Submitted steps wait until a worker is free, then occupy the worker for the
+ * duration given by the {@link CostModel} of the transformation or consumer.
+ * The step is executed when its duration has passed on the virtual clock, so
+ * that pushes done by the step become visible at that point in time. No time
+ * passes in reality, which allows to simulate long running propagation waves
+ * many times faster than real time.
+ * 
+ * This executor is not thread safe, steps must be submitted from the thread
+ * calling {@link #run()}.
+ */
+public class DiscreteEventExecutor implements PropagationExecutor {
+
+	private static final class Task {
+
+		private final Artifact step;
+		private final ArtifactVersion input;
+		// the instances of a bulk step, null for other steps
+		private final Set<ArtifactVersion> instances;
+		private final Runnable work;
+		// the task that was executing when this task was submitted
+		private final Task parent;
+		private final long submitted;
+		private long started;
+		private long finished;
+
+		private Task(Artifact step, ArtifactVersion input, Set<ArtifactVersion> instances, Runnable work, Task parent,
+			long submitted) {
+			this.step = step;
+			this.input = input;
+			this.instances = instances;
+			this.work = work;
+			this.parent = parent;
+			this.submitted = submitted;
+		}
+
+	}
+
+	private static record Event(long time, long sequence, Task task) {}
+
+	private final PriorityQueue<Event> events = new PriorityQueue<>(
+		Comparator.comparingLong(Event::time).thenComparingLong(Event::sequence));
+
+	private final Deque<Task> ready = new ArrayDeque<>();
+
+	private final int workers;
+
+	private final CostModel defaultCostModel;
+
+	private int busy;
+
+	private long now;
+
+	private long sequence;
+
+	private long busyTime;
+
+	private long executed;
+
+	private long failures;
+
+	private long wallTime;
+
+	private Task current;
+
+	private Task last;
+
+	/**
+	 * @param workers          The number of steps that can be executed at the same
+	 *                         time
+	 * @param defaultCostModel The {@link CostModel} for transformations and
+	 *                         consumers that don't provide one
+	 */
+	public DiscreteEventExecutor(int workers, CostModel defaultCostModel) {
+		if (workers < 1) {
+			throw new IllegalArgumentException("Number of workers must be positive but was " + workers);
+		}
+		this.workers = workers;
+		this.defaultCostModel = defaultCostModel;
+	}
+
+	@Override
+	public <T> CompletableFuture<T> submit(Artifact step, ArtifactVersion input, Supplier<T> work) {
+		return submit(input, step, input, null, work);
+	}
+
+	@Override
+	public <T> CompletableFuture<T> submit(ArtifactVersion origin, Artifact step, ArtifactVersion input,
+		Set<ArtifactVersion> instances, Supplier<T> work) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		ready.add(new Task(step, input, instances, () -> {
+			try {
+				result.complete(work.get());
+			} catch (RuntimeException e) {
+				failures++;
+				result.completeExceptionally(e);
+			}
+		}, current, now));
+		return result;
+	}
+
+	/**
+	 * Advances the virtual clock until all submitted steps and the steps submitted
+	 * by them have been executed.
+	 */
+	public void run() {
+		long start = System.nanoTime();
+		dispatch();
+		while (!events.isEmpty()) {
+			Event event = events.poll();
+			now = event.time();
+			busy--;
+			complete(event.task());
+			dispatch();
+		}
+		wallTime += System.nanoTime() - start;
+	}
+
+	private void dispatch() {
+		while (busy < workers && !ready.isEmpty()) {
+			Task task = ready.poll();
+			task.started = now;
+			CostModel costModel = costModelOf(task.step);
+			long cost = task.instances == null ? costModel.cost(task.input)
+				: costModel.cost(task.input, task.instances);
+			busy++;
+			busyTime += cost;
+			events.add(new Event(now + cost, sequence++, task));
+		}
+	}
+
+	private CostModel costModelOf(Artifact step) {
+		Optional<CostModel> costModel = switch (step.kind()) {
+			case TRANSFORMATION -> ((ModelTransformation) step).getCostModel();
+			case CONSUMER -> ((ModelConsumer) step).getCostModel();
+			default -> Optional.empty();
+		};
+		return costModel.orElse(defaultCostModel);
+	}
+
+	private void complete(Task task) {
+		task.finished = now;
+		current = task;
+		try {
+			// continuations of the step submit their steps with this task as parent
+			task.work.run();
+		} finally {
+			current = null;
+		}
+		executed++;
+		last = task;
+	}
+
+	/**
+	 * @return The current time of the virtual clock in milliseconds
+	 */
+	public long now() {
+		return now;
+	}
+
+	/**
+	 * The critical path is the chain of steps that caused the last step to be
+	 * executed. Shortening any step or waiting time on this path shortens the
+	 * total duration of the propagation.
+	 * 
+	 * @return The steps on the critical path, beginning with the first step
+	 */
+	public List<String> getCriticalPath() {
+		List<String> path = new ArrayList<>();
+		for (Task task = last; task != null; task = task.parent) {
+			path.add(String.format("%s with %s: waited %sms, took %sms, finished at %sms", task.step.version(),
+				task.input, task.started - task.submitted, task.finished - task.started, task.finished));
+		}
+		Collections.reverse(path);
+		return path;
+	}
+
+	/**
+	 * Logs the makespan, critical path and utilization of the workers.
+	 */
+	public void report() {
+		double utilization = now == 0 ? 0 : (double) busyTime / ((double) workers * now);
+		Main.log(String.format("[DES] Executed %s steps on %s workers, makespan=%sms; utilization=%.1f%%", executed,
+			workers, now, utilization * 100));
+		Main.log(String.format("[DES] Simulated %sms in %sms of real time", now, wallTime / 1_000_000));
+		if (failures > 0) {
+			Main.log(String.format("[DES] %s steps failed", failures));
+		}
+		Main.log("[DES] Critical path:");
+		getCriticalPath().forEach(step -> Main.log("[DES]   " + step));
+	}
+
+}
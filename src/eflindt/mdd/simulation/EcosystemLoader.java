@@ -0,0 +1,250 @@
+package eflindt.mdd.simulation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import eflindt.mdd.simulation.Artifact.AbstractArtifactBuilder;
+import eflindt.mdd.simulation.Artifact.ArtifactVersion;
+
+/**
+ * Reads an ecosystem definition and pushes each defined artifact into a
+ * {@link Repository} as soon as it is read, so only the current line, or in
+ * bulk mode the versions of the current batch, are held in memory.
+ * 
+ * Each line defines one artifact by its kind and name followed by
+ * <code>key=value</code> attributes, values can be separated by commas.
+ * Versions are written as <code>name@version</code>, the version defaults to
+ * zero. Empty lines and lines starting with <code>#</code> are ignored.
+ * 
+ * <pre>
+ * artifact java metamodel=sourceCode
+ * transformation javaBuildPipeline input=java output=executable behavior=javaBuildPipeline
+ * consumer deploymentPipeline input=executable behavior=deploymentPipeline
+ * coevolution microservice-coEvM metamodel=coEvM changed=microservice@1
+ * </pre>
+ * 
+ * The behavior of transformations and consumers is referenced by a name that
+ * must have been registered with the loader and is required for both. A
+ * behavior includes the bulk transformation and the cost model, if they have
+ * been registered.
+ */
+public class EcosystemLoader {
+
+	private static record TransformationBehavior(Consumer<ArtifactVersion> transformation,
+		Consumer<Set<ArtifactVersion>> bulkTransformation, CostModel costModel) {}
+
+	private static record ConsumerBehavior(Predicate<ArtifactVersion> consumer, CostModel costModel) {}
+
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+	// the number of artifacts committed in bulk mode before their changes are propagated
+	static final int DEFAULT_BATCH_SIZE = 1_000;
+
+	private final Repository repo;
+
+	private final Map<String, TransformationBehavior> transformations = new HashMap<>();
+
+	private final Map<String, ConsumerBehavior> consumers = new HashMap<>();
+
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
+	public EcosystemLoader(Repository repo) {
+		this.repo = repo;
+	}
+
+	public EcosystemLoader withTransformation(String name, Consumer<ArtifactVersion> transformation) {
+		transformations.put(name, new TransformationBehavior(transformation, null, null));
+		return this;
+	}
+
+	public EcosystemLoader withConsumer(String name, Predicate<ArtifactVersion> consumer) {
+		consumers.put(name, new ConsumerBehavior(consumer, null));
+		return this;
+	}
+
+	/**
+	 * Registers the behavior of each transformation and consumer under its name,
+	 * including its bulk transformation and cost model.
+	 * 
+	 * @param artifacts The artifacts providing the behaviors
+	 * @return This loader
+	 */
+	public EcosystemLoader withBehaviorsOf(Artifact... artifacts) {
+		for (Artifact artifact : artifacts) {
+			artifact.asTransformation().ifPresent(t -> transformations.put(t.version().name(),
+				new TransformationBehavior(t.getTransformation(), t.getBulkTransformation().orElse(null),
+					t.getCostModel().orElse(null))));
+			artifact.asConsumer().ifPresent(c -> consumers.put(c.version().name(),
+				new ConsumerBehavior(c.getConsumer(), c.getCostModel().orElse(null))));
+		}
+		return this;
+	}
+
+	/**
+	 * @param batchSize The number of artifacts committed in bulk mode before
+	 *                  their changes are propagated together
+	 * @return This loader
+	 */
+	public EcosystemLoader withBatchSize(int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("The batch size must be positive but was " + batchSize);
+		}
+		this.batchSize = batchSize;
+		return this;
+	}
+
+	/**
+	 * @param path The file containing the ecosystem definition
+	 * @param bulk If <code>true</code>, the changes are propagated in batches
+	 * @return The number of loaded artifacts
+	 * @throws IOException If the file can't be read
+	 */
+	public long load(Path path, boolean bulk) throws IOException {
+		try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			return load(reader, bulk);
+		}
+	}
+
+	/**
+	 * Pushes each artifact as soon as it has been read. In bulk mode, the
+	 * artifacts are only committed while reading and the changes of each batch
+	 * are propagated together once the batch is full, so only the versions of
+	 * the current batch are remembered. A transformation is executed with an
+	 * instance of a later batch by the propagation of the instance.
+	 * 
+	 * @param reader The ecosystem definition
+	 * @param bulk   If <code>true</code>, the changes are propagated in batches
+	 * @return The number of loaded artifacts
+	 * @throws IOException If the definition can't be read
+	 */
+	public long load(Reader reader, boolean bulk) throws IOException {
+		BufferedReader lines = reader instanceof BufferedReader b ? b : new BufferedReader(reader);
+		List<ArtifactVersion> batch = bulk ? new ArrayList<>(batchSize) : null;
+		long count = 0;
+		long lineNumber = 0;
+		String line;
+		while ((line = lines.readLine()) != null) {
+			lineNumber++;
+			line = line.strip();
+			if (line.isEmpty() || line.charAt(0) == '#') {
+				continue;
+			}
+			Artifact artifact = parse(line, lineNumber);
+			if (bulk) {
+				batch.add(repo.commit(artifact));
+				if (batch.size() == batchSize) {
+					Main.onChange(repo, batch);
+					batch.clear();
+				}
+			} else {
+				repo.push(artifact);
+			}
+			count++;
+		}
+		if (bulk && !batch.isEmpty()) {
+			Main.onChange(repo, batch);
+		}
+		return count;
+	}
+
+	private Artifact parse(String line, long lineNumber) {
+		String[] tokens = WHITESPACE.split(line);
+		if (tokens.length < 2) {
+			throw new IllegalArgumentException(String.format("Line %s: expected kind and name but was '%s'",
+				lineNumber, line));
+		}
+		ArtifactVersion version = parseVersion(tokens[1], lineNumber);
+		AbstractArtifactBuilder<?, ?> builder = switch (tokens[0]) {
+			case "artifact" -> ArtifactImpl.buildArtifact(version);
+			case "transformation" -> TransformationImpl.buildTransformation(version);
+			case "consumer" -> ConsumerImpl.buildConsumer(version);
+			case "coevolution" -> CoEvolutionModelImpl.buildCoEvolutionModel(version);
+			default -> throw new IllegalArgumentException(String.format("Line %s: unknown kind '%s'", lineNumber,
+				tokens[0]));
+		};
+		boolean hasBehavior = false;
+		for (int i = 2; i < tokens.length; i++) {
+			int separator = tokens[i].indexOf('=');
+			if (separator < 1) {
+				throw new IllegalArgumentException(String.format("Line %s: expected key=value but was '%s'",
+					lineNumber, tokens[i]));
+			}
+			String key = tokens[i].substring(0, separator);
+			for (String value : tokens[i].substring(separator + 1).split(",")) {
+				apply(builder, key, value, lineNumber);
+			}
+			hasBehavior |= key.equals("behavior");
+		}
+		if (!hasBehavior && (tokens[0].equals("transformation") || tokens[0].equals("consumer"))) {
+			throw new IllegalArgumentException(String.format("Line %s: %s '%s' declares no behavior", lineNumber,
+				tokens[0], version.name()));
+		}
+		return builder.build();
+	}
+
+	private void apply(AbstractArtifactBuilder<?, ?> builder, String key, String value, long lineNumber) {
+		switch (key) {
+			case "metamodel" -> builder.withMetamodel(parseVersion(value, lineNumber));
+			case "input" -> builder.withInput(parseVersion(value, lineNumber));
+			case "output" -> builder.withOutput(parseVersion(value, lineNumber));
+			case "changed" -> {
+				if (builder instanceof CoEvolutionModelImpl.CoEvolutionModelBuiler coev) {
+					coev.withChangedArtifact(parseVersion(value, lineNumber));
+				} else {
+					throw new IllegalArgumentException(String.format(
+						"Line %s: only co-evolution models can declare a changed artifact", lineNumber));
+				}
+			}
+			case "behavior" -> {
+				if (builder instanceof TransformationImpl.TransformationBuilder t) {
+					TransformationBehavior behavior = lookup(transformations, value, lineNumber);
+					t.withTransformation(behavior.transformation())
+						.withBulkTransformation(behavior.bulkTransformation())
+						.withCostModel(behavior.costModel());
+				} else if (builder instanceof ConsumerImpl.ConsumerBuilder c) {
+					ConsumerBehavior behavior = lookup(consumers, value, lineNumber);
+					c.withConsumer(behavior.consumer()).withCostModel(behavior.costModel());
+				} else {
+					throw new IllegalArgumentException(String.format(
+						"Line %s: only transformations and consumers can declare a behavior", lineNumber));
+				}
+			}
+			default -> throw new IllegalArgumentException(String.format("Line %s: unknown attribute '%s'",
+				lineNumber, key));
+		}
+	}
+
+	private static <T> T lookup(Map<String, T> behaviors, String name, long lineNumber) {
+		T behavior = behaviors.get(name);
+		if (behavior == null) {
+			throw new IllegalArgumentException(String.format("Line %s: unknown behavior '%s'", lineNumber, name));
+		}
+		return behavior;
+	}
+
+	private static ArtifactVersion parseVersion(String value, long lineNumber) {
+		int separator = value.lastIndexOf('@');
+		if (separator < 0) {
+			return new ArtifactVersion(value, 0);
+		}
+		try {
+			return new ArtifactVersion(value.substring(0, separator), Integer.parseInt(value.substring(separator + 1)));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(String.format("Line %s: invalid version in '%s'", lineNumber, value),
+				e);
+		}
+	}
+
+}
@@ -1,39 +1,186 @@
 package eflindt.mdd.simulation;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+import eflindt.mdd.simulation.Artifact.ArtifactKind;
 import eflindt.mdd.simulation.Artifact.ArtifactVersion;
+import eflindt.mdd.simulation.PropagationEvents.ConsumerVerdictEvent;
+import eflindt.mdd.simulation.PropagationEvents.PushEvent;
+import eflindt.mdd.simulation.PropagationEvents.QueryEvent;
+import eflindt.mdd.simulation.PropagationEvents.TransformationEvent;
+import jdk.jfr.Recording;
 
 public class Main {
 	
 	static boolean debug = false;
 	
+	static boolean trace = false;
+	
+	// nothing is logged, used to measure the propagation without the cost of printing
+	static boolean quiet = false;
+	
+	// steps are executed inline on the pushing thread if no executor is set
+	static PropagationExecutor executor = null;
+	
 	private static record Example(String description, Runnable runnable) {}
 	
+	// bulk steps process all instances of their input meta model at once, single steps have no instances
+	private static record Step(ArtifactVersion origin, int cycles, long cause, Artifact step, ArtifactVersion input,
+		Set<ArtifactVersion> instances, boolean cyclic) implements Runnable {
+		
+		@Override
+		public void run() {
+			if (instances == null) {
+				Main.execute(step, input, cyclic);
+			} else {
+				Main.executeAll((ModelTransformation) step, input, instances, cyclic);
+			}
+		}
+		
+	}
+	
+	/**
+	 * Receives the steps of a propagation, either to execute them right away or
+	 * to submit them to the {@link PropagationExecutor} later.
+	 */
+	private static interface StepSink {
+		
+		void execute(Artifact step, ArtifactVersion input, boolean cyclic);
+		
+		void executeAll(ModelTransformation step, ArtifactVersion metamodel, Set<ArtifactVersion> instances,
+			boolean cyclic);
+		
+	}
+	
+	private static final StepSink inline = new StepSink() {
+		
+		@Override
+		public void execute(Artifact step, ArtifactVersion input, boolean cyclic) {
+			Main.execute(step, input, cyclic);
+		}
+		
+		@Override
+		public void executeAll(ModelTransformation step, ArtifactVersion metamodel, Set<ArtifactVersion> instances,
+			boolean cyclic) {
+			Main.executeAll(step, metamodel, instances, cyclic);
+		}
+		
+	};
+	
+	/**
+	 * Collects the steps of a wave to submit them once the wave has been planned.
+	 * Reused by all waves planned on the same thread, planning doesn't push, so a
+	 * collector is never used by two waves at once.
+	 */
+	private static final class StepCollector implements StepSink {
+		
+		private ArtifactVersion source;
+		
+		private int cycles;
+		
+		private long cause;
+		
+		// only created for waves that have steps
+		private List<Step> steps;
+		
+		@Override
+		public void execute(Artifact step, ArtifactVersion input, boolean cyclic) {
+			add(new Step(source, cycles, cause, step, input, null, cyclic));
+		}
+		
+		@Override
+		public void executeAll(ModelTransformation step, ArtifactVersion metamodel, Set<ArtifactVersion> instances,
+			boolean cyclic) {
+			add(new Step(source, cycles, cause, step, metamodel, instances, cyclic));
+		}
+		
+		private void add(Step step) {
+			if (steps == null) {
+				steps = new ArrayList<>();
+			}
+			steps.add(step);
+		}
+		
+		private List<Step> drain() {
+			List<Step> collected = steps == null ? Collections.emptyList() : steps;
+			steps = null;
+			return collected;
+		}
+		
+	}
+	
+	private static final ThreadLocal<StepCollector> collectors = ThreadLocal.withInitial(StepCollector::new);
+	
 	private static final Map<Integer, Example> examples = new HashMap<>();
 	
 	static {
 		examples.put(1, new Example("Ecosystem with manual co-evolution support where a meta model is changed", Main::example1));
 		examples.put(2, new Example("Ecosystem with support for automatic model and transformation co-evolution where a meta model is changed", Main::example2));
 		examples.put(3, new Example("Ecosystem with support for automatic model and transformation co-evolution where a platform is changed and migrated manually", Main::example3));
-		examples.put(4, new Example("Ecosystem with transformation to same metamodel version, will create a loop", Main::example4));
+		examples.put(4, new Example("Ecosystem with transformation to same metamodel version, will create a loop that is stopped after 32 cyclic executions", Main::example4));
+		examples.put(5, new Example("Ecosystem from example 3 where generators, builds, deployments and consumers are executed in bounded pipeline stages", Main::example5));
+		examples.put(6, new Example("Ecosystem from example 2 simulated on a virtual clock with cost models for each transformation and consumer", Main::example6));
+		examples.put(7, new Example("Ecosystem from example 2 bulk loaded from example_7_ecosystem.txt where a meta model is changed", Main::example7));
+		examples.put(8, new Example("Ecosystem from example 3 where the platform is changed while many generated models are propagated in the background, urgent changes are executed first", Main::example8));
+		examples.put(9, new Example("Ecosystem from example 2 simulated on a virtual clock with 16 workers, transformations are executed speculatively while the consumers of their input are running", Main::example9));
+		examples.put(10, new Example("Ecosystem from example 2 whose models are kept in a file, the propagation pulls artifacts through a cache of the 16 most recently used artifacts", Main::example10));
+		examples.put(11, new Example("Ecosystem from example 2 simulated on a virtual clock where superseded versions that are not referenced anymore are compacted during the propagation", Main::example11));
 	}
 	
 	static final void log(String message) {
-		System.out.println(message);
+		if (!quiet) {
+			System.out.println(message);
+		}
 	}
 	
-	private static final Repository repo = new RepositoryImpl();
+	private static Repository repo = new RepositoryImpl();
+	
+	private static VerdictCache verdicts = new VerdictCache(10_000);
+	
+	// the number of transformations and consumers executed with a changed artifact
+	private static final AtomicLong propagatedEdges = new AtomicLong();
+	
+	// the number of cyclic transformations executed along the propagation on the current thread
+	private static final ThreadLocal<int[]> cyclicExecutions = ThreadLocal.withInitial(() -> new int[1]);
+	
+	static final int MAXIMUM_CYCLIC_EXECUTIONS = 32;
+	
+	// the change that started the propagation of the step executed by the current thread
+	private static final ThreadLocal<ArtifactVersion> origin = new ThreadLocal<>();
+	
+	// the number of superseded versions examined before each wave, if the repository supports compaction
+	private static int compactionBudget;
+	
+	// seeded so that simulated durations are reproducible
+	private static final Random random = new Random(42);
 	
 	public static void main(String[] args) {
 		if (args.length > 0) {
 			if (args.length > 1 && "-d".equals(args[1])) {
 				debug = true;
 			}
+			if (args.length > 1 && "-t".equals(args[1])) {
+				trace = true;
+			}
 			if ("-h".equals(args[0]) || "--help".equals(args[0])) {
 				printHelp();
 			} else {
@@ -41,7 +188,11 @@ public class Main {
 				if (examples.containsKey(index)) {
 					Example example = examples.get(index);
 					log(String.format("Executing example %s: %s", index, example.description()));
-					example.runnable().run();
+					if (trace) {
+						traced(example.runnable(), Path.of("trace.json"));
+					} else {
+						example.runnable().run();
+					}
 				} else {
 					printHelp();
 				}
@@ -51,36 +202,322 @@ public class Main {
 		}
 	}
 	
+	/**
+	 * Discards all pushed artifacts and cached verdicts, so that several
+	 * examples can be executed one after the other in the same process.
+	 */
+	static void reset() {
+		repo = new RepositoryImpl();
+		verdicts = new VerdictCache(10_000);
+		random.setSeed(42);
+		propagatedEdges.set(0);
+		executor = null;
+		debug = false;
+		trace = false;
+		quiet = false;
+		compactionBudget = 0;
+	}
+	
+	/**
+	 * @return The number of transformations and consumers executed with a
+	 *         changed artifact since the start or the last {@link #reset()}
+	 */
+	static long getPropagatedEdges() {
+		return propagatedEdges.get();
+	}
+	
 	private static void printHelp() {
 		log("Provide an integer as the first argument to run the workflow for an example ecosystem");
 		log("Use the -d flag as the second argument to get verbose output");
+		log("Use the -t flag as the second argument to write a Chrome trace of the propagation to trace.json");
 		examples.forEach((i, e) -> log(String.format("%s: %s", i, e.description())));
 	}
 	
+	/**
+	 * Runs the example while recording the propagation events and exports them
+	 * as a Chrome trace that can be opened in Perfetto.
+	 */
+	private static void traced(Runnable example, Path trace) {
+		try (Recording recording = new Recording()) {
+			recording.enable(PushEvent.class);
+			recording.enable(QueryEvent.class);
+			recording.enable(TransformationEvent.class);
+			recording.enable(ConsumerVerdictEvent.class);
+			recording.start();
+			example.run();
+			recording.stop();
+			Path file = Files.createTempFile("mdd-simulation", ".jfr");
+			try {
+				recording.dump(file);
+				int events = ChromeTraceExporter.export(file, trace);
+				log(String.format("[TRACE] Wrote %s events to %s", events, trace));
+			} finally {
+				Files.deleteIfExists(file);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
 	public static void onChange(Repository repo, ArtifactVersion changedArtifact) {
+		onChange(repo, changedArtifact, Collections.emptySet());
+	}
+	
+	/**
+	 * Propagates the changes of artifacts that have been committed together. A
+	 * transformation or consumer among them is only executed with instances that
+	 * are not part of the changes, the changed instances execute it as part of
+	 * their own propagation.
+	 */
+	public static void onChange(Repository repo, Collection<ArtifactVersion> changedArtifacts) {
+		Set<ArtifactVersion> committed = new HashSet<>(changedArtifacts);
+		for (ArtifactVersion changedArtifact : changedArtifacts) {
+			onChange(repo, changedArtifact, committed);
+		}
+	}
+	
+	private static void onChange(Repository repo, ArtifactVersion changedArtifact, Set<ArtifactVersion> committed) {
+		PushEvent event = PropagationEvents.beginPush(changedArtifact);
+		try {
+			onChange(repo, changedArtifact, committed, PropagationEvents.current());
+		} finally {
+			PropagationEvents.endPush(event);
+		}
+	}
+	
+	private static void onChange(Repository repo, ArtifactVersion changedArtifact, Set<ArtifactVersion> committed,
+		long cause) {
+		if (compactionBudget > 0 && repo instanceof RepositoryImpl store) {
+			// compaction is interleaved with the propagation, steps planned by earlier waves may find their input removed
+			store.compact(compactionBudget);
+		}
 		Set<ArtifactVersion> metamodels = repo.getMetamodels(changedArtifact);
-		// test if all consumers approve of this artifact
-		boolean proceed = metamodels.isEmpty() || metamodels.stream()
-			.map(repo::getConsumers).flatMap(Collection::stream)
-			.map(repo::pull)
-			.map(Artifact::asConsumer)
-			.filter(Optional::isPresent).map(Optional::get)
-			.allMatch(c -> c.test(changedArtifact));
-		if (proceed) {
-			for (ArtifactVersion metamodel : metamodels) {
-				for (ArtifactVersion transformation : repo.getTransformations(metamodel)) {
-					// execute each transformation with the changed artifact as input
-					repo.pull(transformation).asTransformation().ifPresent(t -> t.accept(changedArtifact));
+		// the wave queries a consistent view that isn't affected by nested pushes
+		Repository view = repo.snapshot();
+		try {
+			// test if all consumers approve of this artifact
+			if (executor == null) {
+				if (approvedByConsumers(repo, view, metamodels, changedArtifact)) {
+					propagate(repo, view, metamodels, changedArtifact, committed, inline);
+				}
+			} else {
+				// the steps are determined now, so that transformations pushed while the
+				// consumers are running are not executed twice for the changed artifact
+				StepCollector collector = collectors.get();
+				// pushes done by the steps belong to the change that started the propagation
+				ArtifactVersion source = origin.get() == null ? changedArtifact : origin.get();
+				collector.source = source;
+				collector.cycles = cyclicExecutions.get()[0];
+				// steps executed by other threads are still recorded as caused by this wave
+				collector.cause = cause;
+				propagate(repo, view, metamodels, changedArtifact, committed, collector);
+				List<Step> steps = collector.drain();
+				CompletableFuture<Boolean> approved = approvedByConsumersAsync(repo, view, metamodels, changedArtifact,
+					source, cause);
+				if (repo instanceof SpeculativeRepository) {
+					// transformations don't wait for the consumers, their pushes are staged until
+					// all consumers approved and discarded if one of them rejects
+					Speculation speculation = new Speculation(repo, changedArtifact);
+					// verdicts of consumers can't be rolled back, so they still wait for the approval
+					List<Step> approvedSteps = new ArrayList<>();
+					for (Step step : steps) {
+						if (step.step().kind() == ArtifactKind.TRANSFORMATION) {
+							submit(step, speculation);
+						} else {
+							approvedSteps.add(step);
+						}
+					}
+					approved.whenComplete((proceed, e) -> {
+						boolean accepted = e == null && proceed;
+						speculation.resolve(accepted);
+						if (accepted) {
+							approvedSteps.forEach(step -> submit(step, null));
+						}
+					});
+				} else {
+					approved.thenAccept(proceed -> {
+						if (proceed) {
+							steps.forEach(step -> submit(step, null));
+						}
+					});
+				}
+			}
+		} finally {
+			// versions visible to the view may be compacted once the wave has been planned or executed
+			view.release();
+		}
+	}
+	
+	private static void propagate(Repository repo, Repository view, Set<ArtifactVersion> metamodels,
+		ArtifactVersion changedArtifact, Set<ArtifactVersion> committed, StepSink steps) {
+		for (ArtifactVersion metamodel : metamodels) {
+			PropagationPlan plan = view.getPlan(metamodel);
+			for (ArtifactVersion transformation : plan.transformations()) {
+				// execute each transformation with the changed artifact as input
+				Artifact t = repo.pull(transformation);
+				// versions might have been removed by a compaction in the meantime
+				if (t != null && t.kind() == ArtifactKind.TRANSFORMATION) {
+					steps.execute(t, changedArtifact, plan.cyclicTransformations().contains(transformation));
+				}
+			}
+		}
+		Set<ArtifactVersion> inputs = repo.getInputs(changedArtifact);
+		if (inputs.isEmpty()) {
+			return;
+		}
+		// the changed artifact is immutable, it only needs to be pulled once
+		Artifact changed = repo.pull(changedArtifact);
+		if (changed == null) {
+			return;
+		}
+		ArtifactKind kind = changed.kind();
+		if (kind == ArtifactKind.CONSUMER) {
+			// verdicts of previous consumer versions must not be reused
+			verdicts.invalidate(changedArtifact);
+		} else if (kind != ArtifactKind.TRANSFORMATION) {
+			return;
+		}
+		// bulk transformations are executed once with all instances of each input
+		boolean bulk = kind == ArtifactKind.TRANSFORMATION
+			&& ((ModelTransformation) changed).getBulkTransformation().isPresent();
+		for (ArtifactVersion inputMetamodel : inputs) {
+			Set<ArtifactVersion> instances = view.getInstances(inputMetamodel);
+			boolean cyclic = view.getPlan(inputMetamodel).cyclicTransformations().contains(changedArtifact);
+			if (bulk) {
+				Set<ArtifactVersion> uncommitted = instances;
+				if (!Collections.disjoint(instances, committed)) {
+					uncommitted = new HashSet<>(instances);
+					uncommitted.removeAll(committed);
+				}
+				if (!uncommitted.isEmpty()) {
+					steps.executeAll((ModelTransformation) changed, inputMetamodel, uncommitted, cyclic);
+				}
+				continue;
+			}
+			for (ArtifactVersion instance : instances) {
+				// execute the changed transformation or consumer with all instances
+				if (!committed.contains(instance)) {
+					steps.execute(changed, instance, cyclic);
+				}
+			}
+		}
+	}
+	
+	private static boolean approvedByConsumers(Repository repo, Repository view, Set<ArtifactVersion> metamodels,
+		ArtifactVersion changedArtifact) {
+		for (ArtifactVersion metamodel : metamodels) {
+			for (ArtifactVersion consumer : view.getPlan(metamodel).consumers()) {
+				Artifact c = repo.pull(consumer);
+				if (c == null || c.kind() != ArtifactKind.CONSUMER) {
+					continue;
+				}
+				propagatedEdges.incrementAndGet();
+				// verdicts are only computed once per consumer and artifact version
+				if (!verdicts.test((ModelConsumer) c, changedArtifact)) {
+					return false;
 				}
 			}
-			for (ArtifactVersion inputMetamodel : repo.getInputs(changedArtifact)) {
-				for (ArtifactVersion instance : repo.getInstances(inputMetamodel)) {
-					// cast the changed artifact to a transformation and execute all instances with it
-					repo.pull(changedArtifact).asTransformation().ifPresent(t -> t.accept(instance));
-					// cast the changed artifact to a consumer and execute all instances with it
-					repo.pull(changedArtifact).asConsumer().ifPresent(t -> t.test(instance));
+		}
+		return true;
+	}
+	
+	private static CompletableFuture<Boolean> approvedByConsumersAsync(Repository repo, Repository view,
+		Set<ArtifactVersion> metamodels, ArtifactVersion changedArtifact, ArtifactVersion source, long cause) {
+		CompletableFuture<Boolean> approved = CompletableFuture.completedFuture(true);
+		for (ArtifactVersion metamodel : metamodels) {
+			for (ArtifactVersion consumer : view.getPlan(metamodel).consumers()) {
+				Artifact c = repo.pull(consumer);
+				if (c != null && c.kind() == ArtifactKind.CONSUMER) {
+					propagatedEdges.incrementAndGet();
+					approved = approved.thenCombine(executor.submit(source, c, changedArtifact,
+						() -> PropagationEvents.supplyWithParent(cause,
+							() -> verdicts.test((ModelConsumer) c, changedArtifact))), Boolean::logicalAnd);
+				}
+			}
+		}
+		return approved;
+	}
+	
+	private static void execute(Artifact step, ArtifactVersion input, boolean cyclic) {
+		if (step.kind() != ArtifactKind.TRANSFORMATION) {
+			propagatedEdges.incrementAndGet();
+			verdicts.test((ModelConsumer) step, input);
+			return;
+		}
+		if (cyclic && !enterCycle(step, input)) {
+			return;
+		}
+		propagatedEdges.incrementAndGet();
+		TransformationEvent event = PropagationEvents.beginTransformation(step, input, 1);
+		try {
+			((ModelTransformation) step).accept(input);
+		} finally {
+			PropagationEvents.endTransformation(event);
+			if (cyclic) {
+				cyclicExecutions.get()[0]--;
+			}
+		}
+	}
+	
+	private static void executeAll(ModelTransformation step, ArtifactVersion metamodel, Set<ArtifactVersion> instances,
+		boolean cyclic) {
+		if (cyclic && !enterCycle(step, metamodel)) {
+			return;
+		}
+		propagatedEdges.addAndGet(instances.size());
+		TransformationEvent event = PropagationEvents.beginTransformation(step, metamodel, instances.size());
+		try {
+			step.acceptAll(instances);
+		} finally {
+			PropagationEvents.endTransformation(event);
+			if (cyclic) {
+				cyclicExecutions.get()[0]--;
+			}
+		}
+	}
+	
+	/**
+	 * Counts the execution of a transformation that closes a cycle in the meta
+	 * model graph. Such a transformation may feed its own input forever, like the
+	 * one of example 4, so its propagation is stopped once too many cyclic
+	 * transformations have been executed along one propagation.
+	 * 
+	 * @return false if the transformation must not be executed
+	 */
+	private static boolean enterCycle(Artifact step, ArtifactVersion input) {
+		int[] cycles = cyclicExecutions.get();
+		if (cycles[0] >= MAXIMUM_CYCLIC_EXECUTIONS) {
+			log(String.format("[PLAN] Stopped propagating %s with %s after %s executions of cyclic transformations",
+				step.version(), input, cycles[0]));
+			return false;
+		}
+		cycles[0]++;
+		return true;
+	}
+	
+	private static void submit(Step step, Speculation speculation) {
+		Supplier<Void> work = () -> {
+			ArtifactVersion previous = origin.get();
+			origin.set(step.origin());
+			int[] cycles = cyclicExecutions.get();
+			int previousCycles = cycles[0];
+			cycles[0] = step.cycles();
+			try {
+				if (speculation == null) {
+					PropagationEvents.runWithParent(step.cause(), step);
+				} else {
+					speculation.run(() -> PropagationEvents.runWithParent(step.cause(), step));
 				}
+			} finally {
+				origin.set(previous);
+				cycles[0] = previousCycles;
 			}
+			return null;
+		};
+		if (step.instances() == null) {
+			executor.submit(step.origin(), step.step(), step.input(), work);
+		} else {
+			executor.submit(step.origin(), step.step(), step.input(), step.instances(), work);
 		}
 	}
 	
@@ -92,6 +529,7 @@ public class Main {
 			log("[DEPLOY] Integration testing and deploying " + v);
 			return true;
 		})
+		.withCostModel(CostModel.fixed(600_000))
 		.build();
 	private static final Artifact sourceCode = ArtifactImpl.buildArtifact("sourceCode").build();
 	private static final Artifact ecore = ArtifactImpl.buildArtifact("ecore").build();
@@ -105,11 +543,15 @@ public class Main {
 		.withOutput(executable.version())
 		.withTransformation(v -> {
 			log("[BUILD] Unit testing and building " + v);
-			Artifact m = repo.pull(v);
+			Artifact m = pullRetained(v);
+			if (m == null) {
+				return;
+			}
 			repo.push(ArtifactImpl.buildArtifact(String.format("%sVer%s.jar", m.version().name(), m.version().version()))
 				.withMetamodel(executable.version())
 				.build());
 		})
+		.withCostModel(CostModel.normal(300_000, 60_000, random))
 		.build();
 	
 	// platforms
@@ -135,6 +577,7 @@ public class Main {
 			log("[CONSUME] Validating model of type microservice " + v);
 			return true;
 		})
+		.withCostModel(CostModel.fixed(30_000))
 		.build();
 	private static final Artifact microserviceAnalyzer = ConsumerImpl.buildConsumer("microserviceAnalyzer")
 		.withMetamodel(trafoMM.version())
@@ -143,6 +586,7 @@ public class Main {
 			log("[CONSUME] Analyzing model of type microservice " + v);
 			return true;
 		})
+		.withCostModel(CostModel.normal(60_000, 15_000, random))
 		.build();
 	private static final Artifact microserviceSimulator = ConsumerImpl.buildConsumer("microserviceSimulator")
 		.withMetamodel(trafoMM.version())
@@ -151,6 +595,7 @@ public class Main {
 			log("[CONSUME] Simulating model of type microservice " + v);
 			return true;
 		})
+		.withCostModel(CostModel.normal(120_000, 30_000, random))
 		.build();
 	
 	// microservice generators
@@ -163,6 +608,7 @@ public class Main {
 			repo.push(ArtifactImpl.buildArtifact(v.name() + "SpringBootGen")
 				.withMetamodel(java.version()).build());
 		})
+		.withCostModel(CostModel.fixed(20_000))
 		.build();
 	private static final Artifact microserviceToDotNet = TransformationImpl.buildTransformation("microserviceToDotNet")
 		.withMetamodel(trafoMM.version())
@@ -173,6 +619,7 @@ public class Main {
 			repo.push(ArtifactImpl.buildArtifact(v.name() + "DotNetGen")
 				.withMetamodel(sourceCode.version()).build());
 		})
+		.withCostModel(CostModel.fixed(20_000))
 		.build();
 	private static final Artifact microserviceToPython = TransformationImpl.buildTransformation("microserviceToPython")
 		.withMetamodel(trafoMM.version())
@@ -183,6 +630,7 @@ public class Main {
 			repo.push(ArtifactImpl.buildArtifact(v.name() + "PythonGen")
 				.withMetamodel(sourceCode.version()).build());
 		})
+		.withCostModel(CostModel.fixed(15_000))
 		.build();
 	
 	// generator validator
@@ -192,6 +640,7 @@ public class Main {
 			log("[CONSUME] Validating generator " + v);
 			return true;
 		})
+		.withCostModel(CostModel.fixed(90_000))
 		.build();
 	
 	// co-evolution support
@@ -209,12 +658,14 @@ public class Main {
 					.withChangedArtifact(v).build());
 			}
 		})
+		// the migration model grows with the number of instances of the changed meta model
+		.withCostModel(CostModel.sizeDependent(10_000, 1_000, v -> repo.getInstances(v).size()))
 		.build();
 	private static final Artifact modelCoEvGen = TransformationImpl.buildTransformation("modelCoEvGen")
 		.withInput(coEvM.version())
 		.withOutput(trafoMM.version())
 		.withTransformation(v -> {
-			Artifact m = repo.pull(v);
+			Artifact m = pullRetained(v);
 			if (m instanceof CoEvolutionModel coev) {
 				ArtifactVersion changedArtifact = coev.getChangedArtifact();
 				log("[CoEv] Creating model migration for " + changedArtifact);
@@ -223,25 +674,49 @@ public class Main {
 					.withInput(changedArtifact.decrement())
 					// new meta model version is the output
 					.withOutput(changedArtifact)
-					.withTransformation(instanceVersion -> {
-						// instances that are not conform to the previous version must not be migrated
-						Artifact instance = repo.pull(instanceVersion);
-						if (instance.getMetamodels().contains(changedArtifact.decrement())) {
-							log(String.format("[M2M] Migrating model %s", instance.version()));
-							// the migration must update the meta model to the changed model
-							Artifact migratedInstance = Artifact.copyArtifact(instance)
-								.updateMetamodel(changedArtifact).build();
-							repo.push(migratedInstance);
-						}						
-					})
+					.withTransformation(instanceVersion -> migrate(instanceVersion, changedArtifact)
+						.ifPresent(repo::push))
+					// all instances are migrated in one pass and pushed together
+					.withBulkTransformation(instanceVersions -> repo.pushAll(instanceVersions.stream()
+						.map(instanceVersion -> migrate(instanceVersion, changedArtifact))
+						.flatMap(Optional::stream)
+						.collect(Collectors.toList())))
+					// preparing the migration takes longer than migrating an instance
+					.withCostModel(CostModel.bulk(8_000, 2_000))
 					.build());
 			}
 		}).build();
+	
+	/**
+	 * Pulls the input of a step, which might have been removed by a compaction
+	 * since the step has been planned.
+	 * 
+	 * @return The artifact or <code>null</code> if it has been removed
+	 */
+	private static Artifact pullRetained(ArtifactVersion version) {
+		Artifact artifact = repo.pull(version);
+		if (artifact == null) {
+			log("[COMPACT] Skipping removed version " + version);
+		}
+		return artifact;
+	}
+	
+	private static Optional<Artifact> migrate(ArtifactVersion instanceVersion, ArtifactVersion changedArtifact) {
+		// instances that are not conform to the previous version must not be migrated
+		Artifact instance = pullRetained(instanceVersion);
+		if (instance != null && instance.getMetamodels().contains(changedArtifact.decrement())) {
+			log(String.format("[M2M] Migrating model %s", instance.version()));
+			// the migration must update the meta model to the changed model
+			return Optional.of(Artifact.copyArtifact(instance).updateMetamodel(changedArtifact).build());
+		}
+		return Optional.empty();
+	}
+	
 	private static final Artifact trafoCoEvGen = TransformationImpl.buildTransformation("trafoCoEvGen")
 		.withInput(coEvM.version())
 		.withOutput(trafoMM.version())
 		.withTransformation(v -> {
-			Artifact m = repo.pull(v);
+			Artifact m = pullRetained(v);
 			if (m instanceof CoEvolutionModel coev) {
 				ArtifactVersion changedArtifact = coev.getChangedArtifact();
 				log("[CoEv] Creating transformation migration for " + changedArtifact);
@@ -251,11 +726,11 @@ public class Main {
 					.withInput(trafoMM.version())
 					.withOutput(trafoMM.version())
 					.withTransformation(tVersion -> {
-						Artifact t = repo.pull(tVersion);
+						Artifact t = pullRetained(tVersion);
 						// this condition is important to prevent a loop
 						// only transformations that are dependent on the previous version must be migrated
-						if (t.getInputs().contains(changedArtifact.decrement())
-							|| t.getOutputs().contains(changedArtifact.decrement())) {
+						if (t != null && (t.getInputs().contains(changedArtifact.decrement())
+							|| t.getOutputs().contains(changedArtifact.decrement()))) {
 							log(String.format("[M2M] Migrating transformation %s", t.version()));
 							// the migration must update the dependency to the changed model
 							Artifact migratedTransformation = Artifact.copyArtifact(t)
@@ -303,5 +778,150 @@ public class Main {
 			repo.push(repo.pull(v));
 		}).build());
 	}
+
+	public static void example5() {
+		// the generators push the models of the next wave, so every cycle between the stages passes through them
+		StagedExecutor stagedExecutor = new StagedExecutor(Main::stageOf,
+			new StagedExecutor.Stage("generate", 4, 16, true),
+			new StagedExecutor.Stage("build", 2, 4),
+			new StagedExecutor.Stage("deploy", 1, 2),
+			new StagedExecutor.Stage("consume", 4, 16));
+		executor = stagedExecutor;
+		try {
+			example3();
+			stagedExecutor.awaitCompletion();
+			stagedExecutor.report();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			stagedExecutor.shutdown();
+			executor = null;
+		}
+	}
+	
+	public static void example6() {
+		DiscreteEventExecutor discreteEventExecutor = new DiscreteEventExecutor(4, CostModel.fixed(10_000));
+		executor = discreteEventExecutor;
+		try {
+			example2();
+			discreteEventExecutor.run();
+			discreteEventExecutor.report();
+		} finally {
+			executor = null;
+		}
+	}
+	
+	public static void example7() {
+		try {
+			new EcosystemLoader(repo)
+				.withBehaviorsOf(deploymentPipeline, javaBuildPipeline, coEvModelGen, modelCoEvGen, trafoCoEvGen,
+					generatorValidator, microserviceAnalyzer, microserviceSimulator, microserviceValidator,
+					microserviceToSpringBoot, microserviceToDotNet, microserviceToPython)
+				.load(Path.of("example_7_ecosystem.txt"), true);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		log("### Changing microservice meta model:");
+		repo.push(microservice);
+	}
+	
+	public static void example8() {
+		PriorityExecutor priorityExecutor = new PriorityExecutor(2, Main::priorityOf, Duration.ofMillis(50),
+			Duration.ofNanos(100_000));
+		executor = priorityExecutor;
+		try {
+			repo.push(executable, sourceCode, ecore, trafoMM, java, javaBuildPipeline, springBootPlatform, dotNetPlatform, pythonPlatform, coEvModelGen, modelCoEvGen, trafoCoEvGen, microservice, generatorValidator, microserviceAnalyzer, microserviceSimulator, microserviceValidator, microserviceToSpringBoot, microserviceToDotNet, customerMicroservice, shoppingCartMicroservice, orderMicroservice, microserviceToPython, deploymentPipeline);
+			log("### Generating microservice models in the background:");
+			repo.pushAll(IntStream.range(0, 100)
+				.mapToObj(i -> ArtifactImpl.buildArtifact("generatedMicroservice" + i)
+					.withMetamodel(microservice.version()).build())
+				.collect(Collectors.toList()));
+			log("### Changing Spring Boot platform:");
+			repo.push(springBootPlatform);
+			repo.push(Artifact.copyArtifact(microserviceToSpringBoot)
+				.updateDependency(springBootPlatform.version().increment()).build());
+			priorityExecutor.awaitCompletion();
+			priorityExecutor.report();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			priorityExecutor.shutdown();
+			executor = null;
+		}
+	}
+	
+	public static void example9() {
+		// speculation only shortens the critical path if workers would otherwise be idle
+		DiscreteEventExecutor discreteEventExecutor = new DiscreteEventExecutor(16, CostModel.fixed(10_000));
+		Repository backingStore = repo;
+		repo = new SpeculativeRepository(backingStore);
+		executor = discreteEventExecutor;
+		try {
+			example2();
+			discreteEventExecutor.run();
+			discreteEventExecutor.report();
+		} finally {
+			executor = null;
+			repo = backingStore;
+		}
+	}
+	
+	public static void example10() {
+		Repository previous = repo;
+		// the models are only kept in the file, the cache keeps the most recently pulled ones on the heap
+		try (ColdStore coldStore = ColdStore.temporary()) {
+			CachingRepository cachingRepository = new CachingRepository(new RepositoryImpl(RetentionPolicy.KEEP_ALL,
+				coldStore), 16);
+			// the transformations push to the static repository, so their changes go through the cache as well
+			repo = cachingRepository;
+			example2();
+			cachingRepository.report();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			repo = previous;
+		}
+	}
+	
+	public static void example11() {
+		DiscreteEventExecutor discreteEventExecutor = new DiscreteEventExecutor(4, CostModel.fixed(10_000));
+		Repository backingStore = repo;
+		RepositoryImpl compactedStore = new RepositoryImpl(RetentionPolicy.keepReferenced());
+		repo = compactedStore;
+		executor = discreteEventExecutor;
+		compactionBudget = 4;
+		try {
+			example2();
+			discreteEventExecutor.run();
+			discreteEventExecutor.report();
+			log(String.format("[COMPACT] Kept %s versions, reclaimed about %s bytes", compactedStore.size(),
+				compactedStore.getReclaimedBytes()));
+		} finally {
+			compactionBudget = 0;
+			executor = null;
+			repo = backingStore;
+		}
+	}
+	
+	private static int priorityOf(ArtifactVersion origin, Artifact step) {
+		// changes of platforms and their generators fix vulnerabilities
+		if (origin.name().equals(springBootPlatform.version().name())
+			|| origin.name().equals(microserviceToSpringBoot.version().name())) {
+			return 2;
+		}
+		// deployments finish work that has already been done
+		if (step.version().name().equals(deploymentPipeline.version().name())) {
+			return 1;
+		}
+		return 0;
+	}
+	
+	private static String stageOf(Artifact step) {
+		String name = step.version().name();
+		if (step.kind() == ArtifactKind.CONSUMER) {
+			return deploymentPipeline.version().name().equals(name) ? "deploy" : "consume";
+		}
+		return javaBuildPipeline.version().name().equals(name) ? "build" : "generate";
+	}
 	
-}
+}
\ No newline at end of file
@@ -1,5 +1,6 @@
 package eflindt.mdd.simulation;
 
+import java.util.Optional;
 import java.util.function.Predicate;
 
 import eflindt.mdd.simulation.Artifact.ArtifactVersion;
@@ -18,4 +19,10 @@ public interface ModelConsumer extends Artifact, Predicate<ArtifactVersion> {
 	 */
 	Predicate<ArtifactVersion> getConsumer();
 
+	/**
+	 * @return The {@link CostModel} used to simulate the duration of this
+	 *         consumer, if any
+	 */
+	Optional<CostModel> getCostModel();
+
 }
\ No newline at end of file
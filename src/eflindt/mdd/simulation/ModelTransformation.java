@@ -1,5 +1,7 @@
 package eflindt.mdd.simulation;
 
+import java.util.Optional;
+import java.util.Set;
 import java.util.function.Consumer;
 
 import eflindt.mdd.simulation.Artifact.ArtifactVersion;
@@ -17,5 +19,26 @@ public interface ModelTransformation extends Artifact, Consumer<ArtifactVersion>
 	 * Only needed for the copy mechanism.
 	 */
 	Consumer<ArtifactVersion> getTransformation();
+
+	/**
+	 * @return The transformation executed once with all instances of a meta
+	 *         model, if any. Propagation executes such a transformation with
+	 *         {@link #acceptAll(Set)} instead of once per instance.
+	 */
+	Optional<Consumer<Set<ArtifactVersion>>> getBulkTransformation();
+
+	/**
+	 * Executes this transformation with all instances at once. Transformations
+	 * without a bulk transformation are executed with each instance.
+	 * 
+	 * @param instances The instances to transform
+	 */
+	void acceptAll(Set<ArtifactVersion> instances);
+
+	/**
+	 * @return The {@link CostModel} used to simulate the duration of this
+	 *         transformation, if any
+	 */
+	Optional<CostModel> getCostModel();
 	
 }
\ No newline at end of file
@@ -0,0 +1,253 @@
+package eflindt.mdd.simulation;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import eflindt.mdd.simulation.Artifact.ArtifactVersion;
+
+/**
+ * A {@link PropagationExecutor} that executes steps by priority instead of in
+ * the order they were submitted, so that urgent changes are not stuck behind
+ * a large amount of background work.
+ * 
+ * Each step belongs to a source, the change that started its propagation, and
+ * gets a priority from a {@link Prioritizer}. Steps of different sources are
+ * interleaved: every step of a source starts one quantum of virtual time after
+ * the previous one, so a source that submits thousands of steps at once does
+ * not delay a source that submits a few steps afterwards. The start time of a
+ * step is moved forward by its priority multiplied with the aging interval.
+ * Higher priorities therefore overtake lower ones, but a waiting step is
+ * overtaken by newer steps for at most the difference of the priorities
+ * multiplied with the aging interval, so low priorities can't starve.
+ */
+public class PriorityExecutor implements PropagationExecutor {
+
+	/**
+	 * Assigns priorities to steps, higher priorities are executed first.
+	 */
+	@FunctionalInterface
+	public static interface Prioritizer {
+
+		/**
+		 * @param origin The changed artifact that started the propagation of the
+		 *               step
+		 * @param step   The transformation or consumer that is executed
+		 * @return The priority of the step
+		 */
+		int priority(ArtifactVersion origin, Artifact step);
+
+	}
+
+	private static record Task(long start, long sequence, long submitted, int priority, ArtifactVersion origin,
+		Source source, Runnable work, CompletableFuture<?> result) {}
+
+	private static final class Source {
+
+		// the virtual time at which the last step of the source ends
+		private long finish = Long.MIN_VALUE;
+
+		private int pending;
+
+	}
+
+	private static final class Statistics {
+
+		private long executed;
+
+		private long totalWait;
+
+		private long maximumWait;
+
+	}
+
+	private final PriorityQueue<Task> queue = new PriorityQueue<>(
+		Comparator.comparingLong(Task::start).thenComparingLong(Task::sequence));
+
+	private final Map<ArtifactVersion, Source> sources = new HashMap<>();
+
+	private final Map<Integer, Statistics> statistics = new TreeMap<>(Comparator.reverseOrder());
+
+	private final List<Thread> threads = new ArrayList<>();
+
+	private final Prioritizer prioritizer;
+
+	private final long aging;
+
+	private final long quantum;
+
+	private final AtomicLong failures = new AtomicLong();
+
+	private long sequence;
+
+	private int pending;
+
+	private boolean shutdown;
+
+	/**
+	 * @param workers     The number of threads executing steps
+	 * @param prioritizer Assigns priorities to steps
+	 * @param aging       The time a step has to wait until it is not overtaken
+	 *                    anymore by newer steps with one priority more
+	 * @param quantum     The virtual time each step of a source occupies
+	 */
+	public PriorityExecutor(int workers, Prioritizer prioritizer, Duration aging, Duration quantum) {
+		if (workers < 1) {
+			throw new IllegalArgumentException("Number of workers must be positive but was " + workers);
+		}
+		if (aging.isNegative() || quantum.isNegative() || quantum.isZero()) {
+			throw new IllegalArgumentException(
+				String.format("Aging must not be negative and quantum must be positive but were %s and %s", aging,
+					quantum));
+		}
+		this.prioritizer = prioritizer;
+		this.aging = aging.toNanos();
+		this.quantum = quantum.toNanos();
+		for (int i = 1; i <= workers; i++) {
+			Thread thread = new Thread(this::work, "priority-" + i);
+			thread.setDaemon(true);
+			threads.add(thread);
+			thread.start();
+		}
+	}
+
+	@Override
+	public <T> CompletableFuture<T> submit(Artifact step, ArtifactVersion input, Supplier<T> work) {
+		return submit(input, step, input, work);
+	}
+
+	@Override
+	public <T> CompletableFuture<T> submit(ArtifactVersion origin, Artifact step, ArtifactVersion input,
+		Supplier<T> work) {
+		int priority = prioritizer.priority(origin, step);
+		CompletableFuture<T> result = new CompletableFuture<>();
+		Runnable execution = () -> {
+			try {
+				result.complete(work.get());
+			} catch (Throwable e) {
+				failures.incrementAndGet();
+				result.completeExceptionally(e);
+			}
+		};
+		synchronized (queue) {
+			if (shutdown) {
+				throw new IllegalStateException("Executor has been shut down");
+			}
+			long now = System.nanoTime();
+			Source source = sources.computeIfAbsent(origin, o -> new Source());
+			long start = Math.max(source.finish, now);
+			source.finish = start + quantum;
+			source.pending++;
+			pending++;
+			queue.add(
+				new Task(start - priority * aging, sequence++, now, priority, origin, source, execution, result));
+			// waiters for completion share the monitor with the workers
+			queue.notifyAll();
+		}
+		return result;
+	}
+
+	private void work() {
+		while (true) {
+			Task task;
+			synchronized (queue) {
+				while (queue.isEmpty() && !shutdown) {
+					try {
+						queue.wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (shutdown) {
+					return;
+				}
+				task = queue.poll();
+				long wait = System.nanoTime() - task.submitted();
+				Statistics s = statistics.computeIfAbsent(task.priority(), p -> new Statistics());
+				s.executed++;
+				s.totalWait += wait;
+				s.maximumWait = Math.max(s.maximumWait, wait);
+			}
+			try {
+				task.work().run();
+			} finally {
+				// dependent steps have been submitted when the result is completed
+				done(task);
+			}
+		}
+	}
+
+	private void done(Task task) {
+		synchronized (queue) {
+			if (--task.source().pending == 0) {
+				sources.remove(task.origin());
+			}
+			if (--pending == 0) {
+				queue.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Blocks until all submitted steps and the steps submitted by them have been
+	 * executed.
+	 * 
+	 * @throws InterruptedException If the waiting thread is interrupted
+	 */
+	public void awaitCompletion() throws InterruptedException {
+		synchronized (queue) {
+			while (pending > 0) {
+				queue.wait();
+			}
+		}
+	}
+
+	/**
+	 * Logs the number of executed steps and their waiting time for each
+	 * priority.
+	 */
+	public void report() {
+		synchronized (queue) {
+			statistics.forEach((priority, s) -> Main.log(String.format(
+				"[PRIORITY] %s: executed=%s; meanWait=%.3fms; maxWait=%.3fms", priority, s.executed,
+				s.totalWait / (double) s.executed / 1_000_000, s.maximumWait / 1_000_000d)));
+		}
+		if (failures.get() > 0) {
+			Main.log(String.format("[PRIORITY] %s steps failed", failures.get()));
+		}
+	}
+
+	/**
+	 * Stops the workers. Steps that have not been started yet fail with a
+	 * {@link RejectedExecutionException}, steps submitted afterwards are
+	 * rejected.
+	 */
+	public void shutdown() {
+		List<Task> discarded;
+		synchronized (queue) {
+			shutdown = true;
+			discarded = new ArrayList<>(queue);
+			queue.clear();
+			queue.notifyAll();
+		}
+		// outside of the lock, since completing a result runs its dependent steps
+		for (Task task : discarded) {
+			failures.incrementAndGet();
+			try {
+				task.result().completeExceptionally(new RejectedExecutionException("Executor has been shut down"));
+			} finally {
+				done(task);
+			}
+		}
+	}
+
+}
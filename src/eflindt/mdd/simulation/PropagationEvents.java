@@ -0,0 +1,320 @@
+package eflindt.mdd.simulation;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import eflindt.mdd.simulation.Artifact.ArtifactVersion;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK Flight Recorder events describing the shape of propagation waves.
+ * 
+ * Each wave and step gets an id and the id of the wave or step that caused
+ * it, so the causal chain of a wave can be reconstructed from a recording. Ids
+ * are only assigned while an event is enabled, so there is almost no overhead
+ * if nothing is recorded. Whether an event is recorded is decided when it
+ * begins, so that its end restores the current id even if the recording
+ * starts or stops in between. Events are only allocated while they are
+ * enabled, otherwise a shared disabled event is returned that is never
+ * committed.
+ */
+public final class PropagationEvents {
+
+	static final String CATEGORY = "MDD Simulation";
+
+	private static final AtomicLong ids = new AtomicLong();
+
+	// the id of the wave or step executed by the current thread
+	private static final ThreadLocal<long[]> current = ThreadLocal.withInitial(() -> new long[1]);
+
+	// never begun or committed, only used to test if an event type is enabled
+	private static final PushEvent DISABLED_PUSH = new PushEvent();
+
+	private static final QueryEvent DISABLED_QUERY = new QueryEvent();
+
+	private static final TransformationEvent DISABLED_TRANSFORMATION = new TransformationEvent();
+
+	private static final ConsumerVerdictEvent DISABLED_VERDICT = new ConsumerVerdictEvent();
+
+	private PropagationEvents() {}
+
+	/**
+	 * The propagation wave of a pushed artifact.
+	 */
+	@Name("eflindt.mdd.Push")
+	@Label("Push")
+	@Category(CATEGORY)
+	@Description("Propagation of a pushed artifact")
+	public static class PushEvent extends Event {
+
+		@Label("Artifact")
+		String artifact;
+
+		@Label("Version")
+		int version;
+
+		@Label("Id")
+		long id;
+
+		@Label("Parent Id")
+		long parentId;
+
+		// the event was enabled when it began
+		transient boolean recording;
+
+	}
+
+	/**
+	 * A query against a repository.
+	 */
+	@Name("eflindt.mdd.Query")
+	@Label("Repository Query")
+	@Category(CATEGORY)
+	public static class QueryEvent extends Event {
+
+		@Label("Query")
+		String query;
+
+		@Label("Artifact")
+		String artifact;
+
+		@Label("Version")
+		int version;
+
+		@Label("Result Size")
+		int resultSize;
+
+		@Label("Parent Id")
+		long parentId;
+
+		// the event was enabled when it began
+		transient boolean recording;
+
+	}
+
+	/**
+	 * The execution of a transformation.
+	 */
+	@Name("eflindt.mdd.Transformation")
+	@Label("Transformation")
+	@Category(CATEGORY)
+	public static class TransformationEvent extends Event {
+
+		@Label("Transformation")
+		String transformation;
+
+		@Label("Transformation Version")
+		int transformationVersion;
+
+		@Label("Input")
+		String input;
+
+		@Label("Input Version")
+		int inputVersion;
+
+		@Label("Instances")
+		int instances;
+
+		@Label("Id")
+		long id;
+
+		@Label("Parent Id")
+		long parentId;
+
+		// the event was enabled when it began
+		transient boolean recording;
+
+	}
+
+	/**
+	 * The verdict of a consumer.
+	 */
+	@Name("eflindt.mdd.ConsumerVerdict")
+	@Label("Consumer Verdict")
+	@Category(CATEGORY)
+	public static class ConsumerVerdictEvent extends Event {
+
+		@Label("Consumer")
+		String consumer;
+
+		@Label("Consumer Version")
+		int consumerVersion;
+
+		@Label("Input")
+		String input;
+
+		@Label("Input Version")
+		int inputVersion;
+
+		@Label("Verdict")
+		boolean verdict;
+
+		@Label("Cached")
+		boolean cached;
+
+		@Label("Id")
+		long id;
+
+		@Label("Parent Id")
+		long parentId;
+
+		// the event was enabled when it began
+		transient boolean recording;
+
+	}
+
+	/**
+	 * @return The id of the wave or step executed by the current thread, zero if
+	 *         there is none
+	 */
+	public static long current() {
+		return current.get()[0];
+	}
+
+	/**
+	 * Executes the runnable as if it was caused by the given wave or step. Used
+	 * for steps executed by other threads than the one that discovered them.
+	 */
+	public static void runWithParent(long parentId, Runnable runnable) {
+		long[] holder = current.get();
+		long previous = holder[0];
+		holder[0] = parentId;
+		try {
+			runnable.run();
+		} finally {
+			holder[0] = previous;
+		}
+	}
+
+	/**
+	 * Like {@link #runWithParent(long, Runnable)} but returns the result of the
+	 * supplier.
+	 */
+	public static <T> T supplyWithParent(long parentId, Supplier<T> supplier) {
+		long[] holder = current.get();
+		long previous = holder[0];
+		holder[0] = parentId;
+		try {
+			return supplier.get();
+		} finally {
+			holder[0] = previous;
+		}
+	}
+
+	private static long enter(long id) {
+		long[] holder = current.get();
+		long parentId = holder[0];
+		holder[0] = id;
+		return parentId;
+	}
+
+	private static void exit(long parentId) {
+		current.get()[0] = parentId;
+	}
+
+	static PushEvent beginPush(ArtifactVersion artifact) {
+		if (!DISABLED_PUSH.isEnabled()) {
+			return DISABLED_PUSH;
+		}
+		PushEvent event = new PushEvent();
+		if (event.isEnabled()) {
+			event.artifact = artifact.name();
+			event.version = artifact.version();
+			event.id = ids.incrementAndGet();
+			event.parentId = enter(event.id);
+			event.recording = true;
+			event.begin();
+		}
+		return event;
+	}
+
+	static void endPush(PushEvent event) {
+		if (event.recording) {
+			exit(event.parentId);
+			event.commit();
+		}
+	}
+
+	static QueryEvent beginQuery(String query, ArtifactVersion argument) {
+		if (!DISABLED_QUERY.isEnabled()) {
+			return DISABLED_QUERY;
+		}
+		QueryEvent event = new QueryEvent();
+		if (event.isEnabled()) {
+			event.query = query;
+			if (argument != null) {
+				event.artifact = argument.name();
+				event.version = argument.version();
+			}
+			event.parentId = current();
+			event.recording = true;
+			event.begin();
+		}
+		return event;
+	}
+
+	static void endQuery(QueryEvent event, int resultSize) {
+		if (event.recording) {
+			event.resultSize = resultSize;
+			event.commit();
+		}
+	}
+
+	static TransformationEvent beginTransformation(Artifact transformation, ArtifactVersion input, int instances) {
+		if (!DISABLED_TRANSFORMATION.isEnabled()) {
+			return DISABLED_TRANSFORMATION;
+		}
+		TransformationEvent event = new TransformationEvent();
+		if (event.isEnabled()) {
+			event.transformation = transformation.version().name();
+			event.transformationVersion = transformation.version().version();
+			event.input = input.name();
+			event.inputVersion = input.version();
+			event.instances = instances;
+			event.id = ids.incrementAndGet();
+			event.parentId = enter(event.id);
+			event.recording = true;
+			event.begin();
+		}
+		return event;
+	}
+
+	static void endTransformation(TransformationEvent event) {
+		if (event.recording) {
+			exit(event.parentId);
+			event.commit();
+		}
+	}
+
+	static ConsumerVerdictEvent beginVerdict(Artifact consumer, ArtifactVersion input) {
+		if (!DISABLED_VERDICT.isEnabled()) {
+			return DISABLED_VERDICT;
+		}
+		ConsumerVerdictEvent event = new ConsumerVerdictEvent();
+		if (event.isEnabled()) {
+			event.consumer = consumer.version().name();
+			event.consumerVersion = consumer.version().version();
+			event.input = input.name();
+			event.inputVersion = input.version();
+			event.id = ids.incrementAndGet();
+			event.parentId = enter(event.id);
+			event.recording = true;
+			event.begin();
+		}
+		return event;
+	}
+
+	static void endVerdict(ConsumerVerdictEvent event, boolean verdict, boolean cached) {
+		if (event.recording) {
+			exit(event.parentId);
+			event.verdict = verdict;
+			event.cached = cached;
+			event.commit();
+		}
+	}
+
+}
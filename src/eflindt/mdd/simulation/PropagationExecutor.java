@@ -0,0 +1,59 @@
+package eflindt.mdd.simulation;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import eflindt.mdd.simulation.Artifact.ArtifactVersion;
+
+/**
+ * Executes the steps of a propagation wave, i.e. the execution of a
+ * transformation or consumer with a changed artifact as input.
+ * 
+ * Implementations decide where and when a step is executed. Continuations
+ * registered on the returned future may submit further steps, implementations
+ * must therefore complete the future before considering the step finished.
+ */
+public interface PropagationExecutor {
+
+	/**
+	 * @param step  The transformation or consumer that is executed
+	 * @param input The artifact the step is executed with
+	 * @param work  The actual execution of the step
+	 * @return A future completed with the result of the work
+	 */
+	<T> CompletableFuture<T> submit(Artifact step, ArtifactVersion input, Supplier<T> work);
+
+	/**
+	 * Submits a step that belongs to the propagation of the given change.
+	 * Executors that don't distinguish the sources of steps can ignore it.
+	 * 
+	 * @param origin The changed artifact that started the propagation
+	 * @param step   The transformation or consumer that is executed
+	 * @param input  The artifact the step is executed with
+	 * @param work   The actual execution of the step
+	 * @return A future completed with the result of the work
+	 */
+	default <T> CompletableFuture<T> submit(ArtifactVersion origin, Artifact step, ArtifactVersion input,
+		Supplier<T> work) {
+		return submit(step, input, work);
+	}
+
+	/**
+	 * Submits a step that processes several instances of the input meta model at
+	 * once. Executors that don't distinguish the sizes of steps can ignore the
+	 * instances.
+	 * 
+	 * @param origin    The changed artifact that started the propagation
+	 * @param step      The transformation that is executed
+	 * @param input     The meta model of the processed instances
+	 * @param instances The processed instances
+	 * @param work      The actual execution of the step
+	 * @return A future completed with the result of the work
+	 */
+	default <T> CompletableFuture<T> submit(ArtifactVersion origin, Artifact step, ArtifactVersion input,
+		Set<ArtifactVersion> instances, Supplier<T> work) {
+		return submit(origin, step, input, work);
+	}
+
+}
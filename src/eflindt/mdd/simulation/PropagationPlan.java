@@ -0,0 +1,35 @@
+package eflindt.mdd.simulation;
+
+import java.util.Collections;
+import java.util.Set;
+
+import eflindt.mdd.simulation.Artifact.ArtifactVersion;
+
+/**
+ * A precomputed plan describing which transformations and consumers must be
+ * executed when an instance of a meta model changes.
+ * 
+ * Plans are immutable snapshots, so they can be walked while nested pushes
+ * register new transformations or consumers. Transformations that close a
+ * cycle in the meta model graph, e.g. a transformation with the same input and
+ * output, are contained in the transformations and additionally in the cyclic
+ * transformations.
+ */
+public record PropagationPlan(ArtifactVersion metamodel, Set<ArtifactVersion> transformations,
+	Set<ArtifactVersion> consumers, Set<ArtifactVersion> cyclicTransformations) {
+
+	public PropagationPlan(ArtifactVersion metamodel, Set<ArtifactVersion> transformations,
+		Set<ArtifactVersion> consumers) {
+		this(metamodel, transformations, consumers, Collections.emptySet());
+	}
+
+	/**
+	 * @param metamodel The meta model without any registered transformations or
+	 *                  consumers
+	 * @return An empty {@link PropagationPlan}
+	 */
+	public static PropagationPlan empty(ArtifactVersion metamodel) {
+		return new PropagationPlan(metamodel, Collections.emptySet(), Collections.emptySet());
+	}
+
+}
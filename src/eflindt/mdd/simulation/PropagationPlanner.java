@@ -0,0 +1,157 @@
+package eflindt.mdd.simulation;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import eflindt.mdd.simulation.Artifact.ArtifactVersion;
+
+/**
+ * Compiles the transformations and consumers of a repository into a graph of
+ * meta model versions, where each transformation contributes edges from its
+ * inputs to its outputs.
+ * 
+ * The planner caches a {@link PropagationPlan} per meta model. Registering a
+ * transformation or consumer only invalidates the plans of its inputs. Cycles
+ * are reported as soon as the transformation closing them is registered, the
+ * plans name the transformations closing a cycle so that their propagation can
+ * be bounded.
+ */
+public class PropagationPlanner {
+
+	private final Map<ArtifactVersion, Set<ArtifactVersion>> transformationsByInput = new HashMap<>();
+
+	private final Map<ArtifactVersion, Set<ArtifactVersion>> consumersByInput = new HashMap<>();
+
+	// the number of transformations contributing each edge, keyed by input
+	private final Map<ArtifactVersion, Map<ArtifactVersion, Integer>> edges = new HashMap<>();
+
+	private final Set<ArtifactVersion> cyclicTransformations = new HashSet<>();
+
+	private final Map<ArtifactVersion, PropagationPlan> plans = new HashMap<>();
+
+	/**
+	 * Adds the artifact to the graph if it declares any inputs. Artifacts with
+	 * outputs are treated as transformations, artifacts without outputs as
+	 * consumers.
+	 * 
+	 * @param artifact The pushed {@link Artifact}
+	 */
+	public void register(Artifact artifact) {
+		if (artifact.getInputs().isEmpty()) {
+			return;
+		}
+		boolean transformation = !artifact.getOutputs().isEmpty();
+		Map<ArtifactVersion, Set<ArtifactVersion>> index = transformation ? transformationsByInput : consumersByInput;
+		for (ArtifactVersion input : artifact.getInputs()) {
+			index.computeIfAbsent(input, i -> new HashSet<>()).add(artifact.version());
+			plans.remove(input);
+		}
+		if (transformation) {
+			for (ArtifactVersion input : artifact.getInputs()) {
+				for (ArtifactVersion output : artifact.getOutputs()) {
+					addEdge(artifact.version(), input, output);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes an artifact that has been registered before from the graph.
+	 * 
+	 * @param artifact The removed {@link Artifact}
+	 */
+	public void unregister(Artifact artifact) {
+		if (artifact.getInputs().isEmpty()) {
+			return;
+		}
+		boolean transformation = !artifact.getOutputs().isEmpty();
+		Map<ArtifactVersion, Set<ArtifactVersion>> index = transformation ? transformationsByInput : consumersByInput;
+		for (ArtifactVersion input : artifact.getInputs()) {
+			Set<ArtifactVersion> versions = index.get(input);
+			if (versions != null && versions.remove(artifact.version()) && versions.isEmpty()) {
+				index.remove(input);
+			}
+			plans.remove(input);
+		}
+		if (transformation) {
+			cyclicTransformations.remove(artifact.version());
+			for (ArtifactVersion input : artifact.getInputs()) {
+				for (ArtifactVersion output : artifact.getOutputs()) {
+					removeEdge(input, output);
+				}
+			}
+		}
+	}
+
+	private void removeEdge(ArtifactVersion input, ArtifactVersion output) {
+		Map<ArtifactVersion, Integer> outputs = edges.get(input);
+		if (outputs == null) {
+			return;
+		}
+		if (outputs.merge(output, -1, (count, decrement) -> count + decrement == 0 ? null : count + decrement) == null
+			&& outputs.isEmpty()) {
+			edges.remove(input);
+		}
+	}
+
+	private void addEdge(ArtifactVersion transformation, ArtifactVersion input, ArtifactVersion output) {
+		if (input.equals(output) || reaches(output, input)) {
+			cyclicTransformations.add(transformation);
+			Main.log(String.format("[PLAN] %s closes a cycle from %s to %s", transformation, input, output));
+		}
+		edges.computeIfAbsent(input, i -> new HashMap<>()).merge(output, 1, Integer::sum);
+	}
+
+	private boolean reaches(ArtifactVersion from, ArtifactVersion to) {
+		Set<ArtifactVersion> visited = new HashSet<>();
+		Deque<ArtifactVersion> open = new ArrayDeque<>();
+		open.push(from);
+		while (!open.isEmpty()) {
+			ArtifactVersion current = open.pop();
+			if (current.equals(to)) {
+				return true;
+			}
+			if (visited.add(current)) {
+				open.addAll(edges.getOrDefault(current, Collections.emptyMap()).keySet());
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param metamodel The meta model of a changed artifact
+	 * @return The cached {@link PropagationPlan} for instances of the meta model
+	 */
+	public PropagationPlan getPlan(ArtifactVersion metamodel) {
+		PropagationPlan plan = plans.get(metamodel);
+		if (plan == null) {
+			Set<ArtifactVersion> transformations = transformationsByInput.get(metamodel);
+			Set<ArtifactVersion> consumers = consumersByInput.get(metamodel);
+			if (transformations == null && consumers == null) {
+				return PropagationPlan.empty(metamodel);
+			}
+			Set<ArtifactVersion> cyclic = new HashSet<>();
+			if (transformations != null) {
+				for (ArtifactVersion transformation : transformations) {
+					if (cyclicTransformations.contains(transformation)) {
+						cyclic.add(transformation);
+					}
+				}
+			}
+			plan = new PropagationPlan(metamodel, snapshot(transformations), snapshot(consumers),
+				cyclic.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(cyclic));
+			plans.put(metamodel, plan);
+		}
+		return plan;
+	}
+
+	private static Set<ArtifactVersion> snapshot(Set<ArtifactVersion> versions) {
+		return versions == null ? Collections.emptySet() : Collections.unmodifiableSet(new HashSet<>(versions));
+	}
+
+}
@@ -0,0 +1,543 @@
+package eflindt.mdd.simulation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import eflindt.mdd.simulation.Artifact.ArtifactVersion;
+
+/**
+ * Runs the examples of {@link Main} and synthetic ecosystems and compares the
+ * logged events with the recorded golden output, e.g.
+ * {@code example_1_output.txt}. A scenario fails if its events diverge from
+ * the golden output or if it exceeds its budget for wall time, allocated bytes
+ * or pushes per wave. The pushes logged after a {@code ###} line count as one
+ * wave. Each scenario is executed once before it is measured, so that class
+ * loading and compilation don't count against its budget.
+ * 
+ * Scenarios are executed one after the other in the calling thread, so only
+ * the examples that propagate inline or on the virtual clock are covered, the
+ * order of events of the concurrent examples depends on the scheduling. The
+ * golden output of large scenarios is recorded as a digest.
+ * 
+ * The bytes a scenario allocates per executed transformation or consumer
+ * include logging and the work of the transformations. The overhead of the
+ * propagation itself is measured separately with logging disabled, by
+ * executing a changed transformation that does nothing with many instances.
+ * 
+ * Behavior that doesn't show in the logged events is covered by checks, which
+ * fail with an {@link IllegalStateException} describing the violation.
+ * 
+ * Run it from the project directory, with {@code --record} to overwrite the
+ * golden output with the current events, optionally followed by the names of
+ * the scenarios to execute.
+ */
+public class RegressionHarness {
+
+	/**
+	 * The resources a scenario may use at most.
+	 */
+	public static record Budget(Duration wallTime, long allocatedBytes, int pushesPerWave) {}
+
+	private static record Scenario(String name, Path golden, boolean digest, Budget budget, Runnable runnable) {}
+
+	private static record Check(String name, Runnable runnable) {}
+
+	private static record Result(List<String> events, long wallTime, long allocatedBytes, long edges,
+		int pushesPerWave) {}
+
+	// the only event that depends on the machine
+	private static final Pattern REAL_TIME = Pattern.compile("in \\d+ms of real time");
+
+	private static final long KB = 1024;
+
+	private static final long MB = 1024 * KB;
+
+	// wall time and allocations about three times the measurements after a warm-up run, the pushes per wave are
+	// deterministic and must not grow at all
+	private static final List<Scenario> scenarios = List.of(
+		example(1, new Budget(Duration.ofMillis(90), 512 * KB, 10)),
+		example(2, new Budget(Duration.ofMillis(100), 800 * KB, 25)),
+		example(3, new Budget(Duration.ofMillis(50), 512 * KB, 8)),
+		example(4, new Budget(Duration.ofMillis(120), 1600 * KB, 129)),
+		example(6, new Budget(Duration.ofMillis(80), MB, 37)),
+		example(7, new Budget(Duration.ofMillis(70), MB, 25)),
+		example(9, new Budget(Duration.ofMillis(70), MB, 37)),
+		example(10, new Budget(Duration.ofMillis(50), 800 * KB, 25)),
+		example(11, new Budget(Duration.ofMillis(70), MB, 36)),
+		new Scenario("synthetic_small", Path.of("synthetic_small_output.txt"), false,
+			new Budget(Duration.ofMillis(80), 3 * MB + 512 * KB, 50), () -> syntheticEcosystem(3, 10, 2, 2)),
+		new Scenario("synthetic_large", Path.of("synthetic_large_output.txt"), true,
+			new Budget(Duration.ofMillis(1600), 200 * MB, 700), () -> syntheticEcosystem(20, 100, 3, 3)));
+
+	private static final List<Check> checks = List.of(
+		new Check("cold_store_cache", RegressionHarness::coldStoreCache),
+		new Check("snapshot_compaction", RegressionHarness::snapshotCompaction),
+		new Check("priority_shutdown", RegressionHarness::priorityShutdown),
+		new Check("speculation_rejection", RegressionHarness::speculationRejection));
+
+	// instances the changed transformation is executed with by each push of the propagation measurement
+	private static final int PROPAGATION_INSTANCES = 10_000;
+
+	private static final int PROPAGATION_PUSHES = 20;
+
+	// the propagation doesn't allocate per executed transformation or consumer, only the iterators over the sets
+	// traversed by each wave remain, about twice the measurement for waves with two edges
+	private static final long PROPAGATION_BYTES_PER_EDGE = 32;
+
+	public static void main(String[] args) throws IOException {
+		boolean record = args.length > 0 && "--record".equals(args[0]);
+		List<String> names = Arrays.asList(args).subList(record ? 1 : 0, args.length);
+		PrintStream out = System.out;
+		int failures = 0;
+		for (Scenario scenario : scenarios) {
+			if (!names.isEmpty() && !names.contains(scenario.name())) {
+				continue;
+			}
+			// the first run loads and compiles the code, it would dominate the measurements
+			run(scenario);
+			Result result = run(scenario);
+			List<String> golden = format(scenario, result.events());
+			// the allocations of the logging, the transformations and the propagation per executed transformation or
+			// consumer, see propagation() for the propagation alone
+			String measurements = String.format("wallTime=%sms; allocated=%.2fMB; bytesPerEdge=%s; pushesPerWave=%s",
+				result.wallTime() / 1_000_000, result.allocatedBytes() / (double) MB,
+				result.allocatedBytes() / Math.max(1, result.edges()), result.pushesPerWave());
+			if (record) {
+				Files.write(scenario.golden(), golden, StandardCharsets.UTF_8);
+				out.println(String.format("[HARNESS] %s: RECORDED %s events; %s", scenario.name(),
+					result.events().size(), measurements));
+				continue;
+			}
+			List<String> violations = new ArrayList<>();
+			compare(scenario, golden, violations);
+			Budget budget = scenario.budget();
+			if (result.wallTime() > budget.wallTime().toNanos()) {
+				violations.add(String.format("wall time exceeds budget of %sms", budget.wallTime().toMillis()));
+			}
+			if (result.allocatedBytes() > budget.allocatedBytes()) {
+				violations.add(String.format("allocated bytes exceed budget of %.2fMB",
+					budget.allocatedBytes() / (double) MB));
+			}
+			if (result.pushesPerWave() > budget.pushesPerWave()) {
+				violations.add(String.format("pushes per wave exceed budget of %s", budget.pushesPerWave()));
+			}
+			out.println(String.format("[HARNESS] %s: %s; %s", scenario.name(), violations.isEmpty() ? "OK" : "FAILED",
+				measurements));
+			violations.forEach(v -> out.println("[HARNESS]   " + v));
+			if (!violations.isEmpty()) {
+				failures++;
+			}
+		}
+		for (Check check : checks) {
+			if (!names.isEmpty() && !names.contains(check.name())) {
+				continue;
+			}
+			Main.reset();
+			Main.quiet = true;
+			try {
+				check.runnable().run();
+				out.println(String.format("[HARNESS] %s: OK", check.name()));
+			} catch (IllegalStateException e) {
+				out.println(String.format("[HARNESS] %s: FAILED", check.name()));
+				out.println("[HARNESS]   " + e.getMessage());
+				failures++;
+			} finally {
+				Main.reset();
+			}
+		}
+		if (names.isEmpty() || names.contains("propagation")) {
+			// the first run loads and compiles the code, it would dominate the measurement
+			propagation();
+			long[] result = propagation();
+			long bytesPerEdge = result[1] / Math.max(1, result[0]);
+			boolean ok = record || bytesPerEdge <= PROPAGATION_BYTES_PER_EDGE;
+			out.println(String.format("[HARNESS] propagation: %s; edges=%s; allocated=%.2fMB; bytesPerEdge=%s",
+				record ? "MEASURED" : ok ? "OK" : "FAILED", result[0], result[1] / (double) MB, bytesPerEdge));
+			if (!ok) {
+				out.println(String.format("[HARNESS]   bytes per edge exceed budget of %s", PROPAGATION_BYTES_PER_EDGE));
+				failures++;
+			}
+		}
+		if (failures > 0) {
+			out.println(String.format("[HARNESS] %s scenarios failed", failures));
+			System.exit(1);
+		}
+	}
+
+	private static Scenario example(int index, Budget budget) {
+		return new Scenario("example_" + index, Path.of(String.format("example_%s_output.txt", index)), false, budget,
+			() -> Main.main(new String[] { String.valueOf(index) }));
+	}
+
+	private static Result run(Scenario scenario) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+			.getThreadMXBean();
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		PrintStream out = System.out;
+		Main.reset();
+		System.setOut(new PrintStream(buffer, true, StandardCharsets.UTF_8));
+		long allocated = threads.getCurrentThreadAllocatedBytes();
+		long start = System.nanoTime();
+		try {
+			scenario.runnable().run();
+		} finally {
+			System.setOut(out);
+		}
+		long wallTime = System.nanoTime() - start;
+		allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+		List<String> events = buffer.toString(StandardCharsets.UTF_8).lines()
+			.map(line -> REAL_TIME.matcher(line).replaceAll("in ?ms of real time"))
+			.collect(Collectors.toList());
+		return new Result(events, wallTime, allocated, Main.getPropagatedEdges(), pushesPerWave(events));
+	}
+
+	private static int pushesPerWave(List<String> events) {
+		int maximum = 0;
+		int pushes = -1;
+		for (String event : events) {
+			if (event.startsWith("###")) {
+				pushes = 0;
+			} else if (pushes >= 0 && event.startsWith("[PUSH]")) {
+				maximum = Math.max(maximum, ++pushes);
+			}
+		}
+		return maximum;
+	}
+
+	private static List<String> format(Scenario scenario, List<String> events) {
+		if (!scenario.digest()) {
+			return events;
+		}
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			events.forEach(e -> digest.update((e + "\n").getBytes(StandardCharsets.UTF_8)));
+			return List.of(String.format("sha256 %s %s events", HexFormat.of().formatHex(digest.digest()),
+				events.size()));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not supported", e);
+		}
+	}
+
+	private static void compare(Scenario scenario, List<String> actual, List<String> violations) throws IOException {
+		if (!Files.exists(scenario.golden())) {
+			violations.add(String.format("golden output %s is missing, record it with --record", scenario.golden()));
+			return;
+		}
+		List<String> expected = Files.readAllLines(scenario.golden(), StandardCharsets.UTF_8);
+		if (scenario.digest()) {
+			if (!expected.equals(actual)) {
+				violations.add(String.format("events diverge, expected %s but was %s", expected.get(0), actual.get(0)));
+			}
+			return;
+		}
+		for (int i = 0; i < Math.max(expected.size(), actual.size()); i++) {
+			String e = i < expected.size() ? expected.get(i) : "<end of output>";
+			String a = i < actual.size() ? actual.get(i) : "<end of output>";
+			if (!e.equals(a)) {
+				violations.add(String.format("events diverge at line %s, expected %s but was %s", i + 1, e, a));
+				return;
+			}
+		}
+	}
+
+	private static void expect(boolean condition, String violation, Object... arguments) {
+		if (!condition) {
+			throw new IllegalStateException(String.format(violation, arguments));
+		}
+	}
+
+	/**
+	 * Pulls a version kept in a {@link ColdStore} through a
+	 * {@link CachingRepository} before and after the backing repository removed
+	 * it.
+	 */
+	private static void coldStoreCache() {
+		try (ColdStore coldStore = ColdStore.temporary()) {
+			RepositoryImpl backingStore = new RepositoryImpl(RetentionPolicy.keepLast(1), coldStore);
+			CachingRepository cache = new CachingRepository(backingStore, 4);
+			Artifact metamodel = ArtifactImpl.buildArtifact("metamodel").build();
+			Artifact model = ArtifactImpl.buildArtifact("model").withMetamodel(metamodel.version()).build();
+			cache.push(metamodel, model, model);
+			ArtifactVersion superseded = model.version();
+			Artifact pulled = cache.pull(superseded);
+			expect(pulled != null && pulled.getMetamodels().equals(Set.of(metamodel.version())),
+				"%s decoded from the cold store as %s", superseded, pulled);
+			long hits = cache.getStatistics().hits();
+			expect(cache.pull(superseded) == pulled && cache.getStatistics().hits() == hits + 1,
+				"%s is not served from the cache", superseded);
+			expect(backingStore.compact(10).removed() == 1, "%s has not been compacted", superseded);
+			expect(cache.pull(superseded) == null, "the cache still serves the removed version %s", superseded);
+			expect(cache.getStatistics().invalidations() == 1, "expected one invalidation but was %s",
+				cache.getStatistics());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Compacts a repository while a snapshot and a view of the same state are
+	 * live, and again after both have been released.
+	 */
+	private static void snapshotCompaction() {
+		RepositoryImpl repo = new RepositoryImpl(RetentionPolicy.keepLast(1));
+		Artifact metamodel = ArtifactImpl.buildArtifact("metamodel").build();
+		Artifact model = ArtifactImpl.buildArtifact("model").withMetamodel(metamodel.version()).build();
+		repo.push(metamodel);
+		long first = repo.getSequence();
+		for (int i = 0; i < 3; i++) {
+			repo.push(model);
+		}
+		Set<ArtifactVersion> all = Set.copyOf(repo.getInstances(metamodel.version()));
+		expect(all.size() == 3, "expected three versions of the model but were %s", all);
+		Repository snapshot = repo.snapshot();
+		Repository view = repo.asOf(repo.getSequence());
+		expect(repo.compact(10).removed() == 0, "compaction removed versions shown by a live snapshot");
+		expect(snapshot.getInstances(metamodel.version()).equals(all), "the snapshot changed to %s",
+			snapshot.getInstances(metamodel.version()));
+		expect(view.getInstances(metamodel.version()).equals(all), "the view changed to %s",
+			view.getInstances(metamodel.version()));
+		for (ArtifactVersion version : all) {
+			expect(snapshot.pull(version) != null, "%s can't be pulled from the snapshot", version);
+		}
+		snapshot.release();
+		view.release();
+		expect(repo.compact(10).removed() == 2, "the released versions have not been compacted");
+		Set<ArtifactVersion> latest = repo.getInstances(metamodel.version());
+		expect(latest.size() == 1 && latest.iterator().next().version() == 2,
+			"expected only the latest version of the model but were %s", latest);
+		try {
+			repo.asOf(first).release();
+			expect(false, "a view before the compaction horizon at %s has been created", repo.getHorizon());
+		} catch (IllegalArgumentException e) {
+			// the superseded versions it would show have been removed
+		}
+	}
+
+	/**
+	 * Shuts a {@link PriorityExecutor} down while its only worker is busy and
+	 * further steps are queued. The queued steps and the results combined from
+	 * them must fail instead of leaving the waiting threads blocked.
+	 */
+	private static void priorityShutdown() {
+		PriorityExecutor executor = new PriorityExecutor(1, (origin, step) -> 0, Duration.ZERO,
+			Duration.ofNanos(1));
+		Artifact step = ArtifactImpl.buildArtifact("step").build();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch blocked = new CountDownLatch(1);
+		CompletableFuture<Boolean> running = executor.submit(step, step.version(), () -> {
+			started.countDown();
+			try {
+				return blocked.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		});
+		CompletableFuture<Integer> first = executor.submit(step, step.version(), () -> 1);
+		CompletableFuture<Integer> second = executor.submit(step, step.version(), () -> 2);
+		CompletableFuture<Integer> combined = first.thenCombine(second, Integer::sum);
+		try {
+			expect(started.await(10, TimeUnit.SECONDS), "the first step has not been started");
+			executor.shutdown();
+			expect(first.isCompletedExceptionally() && second.isCompletedExceptionally(),
+				"the queued steps have not failed");
+			expect(combined.isCompletedExceptionally(), "the combined result has not failed");
+			blocked.countDown();
+			expect(running.get(10, TimeUnit.SECONDS), "the running step has not finished");
+			Thread waiter = new Thread(() -> {
+				try {
+					executor.awaitCompletion();
+				} catch (InterruptedException e) {
+					// the check fails since the waiter is still alive
+				}
+			});
+			waiter.setDaemon(true);
+			waiter.start();
+			waiter.join(10_000);
+			expect(!waiter.isAlive(), "awaitCompletion still blocks after the shutdown");
+		} catch (InterruptedException | ExecutionException | TimeoutException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Pushes an approved and a rejected model through a
+	 * {@link SpeculativeRepository} on a virtual clock, where the generator of
+	 * both finishes long before their validator. The output generated from the
+	 * rejected model must be discarded, the one generated from the approved model
+	 * committed.
+	 */
+	private static void speculationRejection() {
+		RepositoryImpl backingStore = new RepositoryImpl();
+		Repository repo = new SpeculativeRepository(backingStore);
+		Artifact metamodel = ArtifactImpl.buildArtifact("metamodel").build();
+		Artifact code = ArtifactImpl.buildArtifact("code").build();
+		List<ArtifactVersion> generated = new ArrayList<>();
+		Artifact generator = TransformationImpl.buildTransformation("generator")
+			.withInput(metamodel.version())
+			.withOutput(code.version())
+			.withCostModel(CostModel.fixed(1_000))
+			.withTransformation(v -> {
+				generated.add(v);
+				repo.push(ArtifactImpl.buildArtifact(v.name() + "Code").withMetamodel(code.version()).build());
+			}).build();
+		Artifact validator = ConsumerImpl.buildConsumer("validator")
+			.withInput(metamodel.version())
+			.withCostModel(CostModel.fixed(10_000))
+			.withConsumer(v -> !v.name().equals("rejected"))
+			.build();
+		repo.push(metamodel, code, generator, validator);
+		DiscreteEventExecutor executor = new DiscreteEventExecutor(4, CostModel.fixed(1_000));
+		Main.executor = executor;
+		repo.push(ArtifactImpl.buildArtifact("approved").withMetamodel(metamodel.version()).build(),
+			ArtifactImpl.buildArtifact("rejected").withMetamodel(metamodel.version()).build());
+		executor.run();
+		Set<String> names = generated.stream().map(ArtifactVersion::name).collect(Collectors.toSet());
+		expect(names.equals(Set.of("approved", "rejected")),
+			"the generator has not been executed speculatively for both models but for %s", generated);
+		Set<String> committed = backingStore.getInstances(code.version()).stream()
+			.map(ArtifactVersion::name)
+			.collect(Collectors.toSet());
+		expect(committed.equals(Set.of("approvedCode")),
+			"expected only the code generated from the approved model but were %s", committed);
+	}
+
+	/**
+	 * Pushes a meta model with many instances, a transformation that does nothing
+	 * and a consumer that approves everything. Then, with logging disabled, the
+	 * transformation is pushed again several times and the changes of all
+	 * instances are propagated once more, which doesn't commit anything.
+	 * 
+	 * @return The number of executed transformations and consumers and the bytes
+	 *         allocated by these pushes and propagations
+	 */
+	private static long[] propagation() {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+			.getThreadMXBean();
+		Main.reset();
+		Main.quiet = true;
+		try {
+			Repository repo = new RepositoryImpl();
+			Artifact metamodel = ArtifactImpl.buildArtifact("metamodel").build();
+			Artifact transformation = TransformationImpl.buildTransformation("transformation")
+				.withInput(metamodel.version())
+				.withTransformation(v -> {})
+				.build();
+			Artifact consumer = ConsumerImpl.buildConsumer("consumer")
+				.withInput(metamodel.version())
+				.withConsumer(v -> true)
+				.build();
+			List<Artifact> instances = new ArrayList<>();
+			for (int i = 0; i < PROPAGATION_INSTANCES; i++) {
+				instances.add(ArtifactImpl.buildArtifact("model" + i).withMetamodel(metamodel.version()).build());
+			}
+			repo.push(metamodel);
+			repo.pushAll(instances);
+			repo.push(transformation, consumer);
+			List<ArtifactVersion> versions = new ArrayList<>(repo.getInstances(metamodel.version()));
+			long edges = Main.getPropagatedEdges();
+			long allocated = threads.getCurrentThreadAllocatedBytes();
+			for (int i = 0; i < PROPAGATION_PUSHES; i++) {
+				// pushing an artifact again creates a new version
+				repo.push(transformation);
+			}
+			// each instance is a wave with one transformation and one cached verdict
+			for (ArtifactVersion version : versions) {
+				Main.onChange(repo, version);
+			}
+			allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+			return new long[] { Main.getPropagatedEdges() - edges, allocated };
+		} finally {
+			Main.reset();
+		}
+	}
+
+	/**
+	 * Pushes an ecosystem with the given number of meta models, each with
+	 * instances, generators and consumers, that share a build and a deployment,
+	 * then changes a generator and the instances of a meta model.
+	 */
+	private static void syntheticEcosystem(int metamodels, int instances, int generators, int consumers) {
+		Repository repo = new RepositoryImpl();
+		Artifact ecore = ArtifactImpl.buildArtifact("ecore").build();
+		Artifact code = ArtifactImpl.buildArtifact("code").build();
+		Artifact binary = ArtifactImpl.buildArtifact("binary").build();
+		List<Artifact> ecosystem = new ArrayList<>(List.of(ecore, code, binary,
+			TransformationImpl.buildTransformation("build")
+				.withInput(code.version())
+				.withOutput(binary.version())
+				.withTransformation(v -> {
+					Main.log("[BUILD] Building " + v);
+					repo.push(ArtifactImpl.buildArtifact(v.name() + "Bin").withMetamodel(binary.version()).build());
+				}).build(),
+			ConsumerImpl.buildConsumer("deployment")
+				.withInput(binary.version())
+				.withConsumer(v -> {
+					Main.log("[DEPLOY] Deploying " + v);
+					return true;
+				}).build()));
+		List<List<Artifact>> models = new ArrayList<>();
+		List<Artifact> changedGenerators = new ArrayList<>();
+		for (int i = 0; i < metamodels; i++) {
+			Artifact metamodel = ArtifactImpl.buildArtifact("metamodel" + i).withMetamodel(ecore.version()).build();
+			ecosystem.add(metamodel);
+			for (int j = 0; j < generators; j++) {
+				String suffix = "Gen" + j;
+				Artifact generator = TransformationImpl.buildTransformation(metamodel.version().name() + "Generator" + j)
+					.withInput(metamodel.version())
+					.withOutput(code.version())
+					.withTransformation(v -> {
+						Main.log("[M2T] Generating code for model " + v);
+						repo.push(ArtifactImpl.buildArtifact(v.name() + suffix).withMetamodel(code.version()).build());
+					}).build();
+				ecosystem.add(generator);
+				if (i == 0) {
+					changedGenerators.add(generator);
+				}
+			}
+			for (int j = 0; j < consumers; j++) {
+				ecosystem.add(ConsumerImpl.buildConsumer(metamodel.version().name() + "Validator" + j)
+					.withInput(metamodel.version())
+					.withConsumer(v -> {
+						Main.log("[CONSUME] Validating model " + v);
+						return true;
+					}).build());
+			}
+			List<Artifact> instancesOfMetamodel = new ArrayList<>();
+			for (int j = 0; j < instances; j++) {
+				instancesOfMetamodel.add(ArtifactImpl.buildArtifact(metamodel.version().name() + "Model" + j)
+					.withMetamodel(metamodel.version()).build());
+			}
+			models.add(instancesOfMetamodel);
+		}
+		repo.push(ecosystem.toArray(Artifact[]::new));
+		models.forEach(m -> repo.push(m.toArray(Artifact[]::new)));
+		Main.log("### Changing the generators of metamodel0:");
+		// pushing an artifact again creates a new version
+		changedGenerators.forEach(repo::push);
+		Main.log("### Changing the models of metamodel" + (metamodels - 1) + ":");
+		repo.pushAll(models.get(metamodels - 1));
+	}
+
+}
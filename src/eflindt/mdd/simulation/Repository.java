@@ -1,5 +1,8 @@
 package eflindt.mdd.simulation;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 import eflindt.mdd.simulation.Artifact.ArtifactVersion;
@@ -28,8 +31,71 @@ public interface Repository {
 
 	Set<ArtifactVersion> getConsumers(ArtifactVersion version);
 
+	/**
+	 * @param version The meta model of a changed artifact
+	 * @return The transformations and consumers to execute for instances of the
+	 *         meta model
+	 */
+	PropagationPlan getPlan(ArtifactVersion version);
+
+	/**
+	 * @return The number of versions committed to this repository so far
+	 */
+	long getSequence();
+
+	/**
+	 * @return An immutable view of the current state of this repository, versions
+	 *         committed later are not visible
+	 */
+	Repository snapshot();
+
+	/**
+	 * @param sequence A sequence number returned by {@link #getSequence()}
+	 * @return An immutable view of the state of this repository after the given
+	 *         number of commits, without the versions removed before the view
+	 *         was created
+	 */
+	Repository asOf(long sequence);
+
+	/**
+	 * Releases a view returned by {@link #snapshot()} or {@link #asOf(long)}, so
+	 * that a compaction can remove the versions it still shows. The view must not
+	 * be used afterwards, since the repository may reuse it for a later view. Does
+	 * nothing for repositories that aren't such a view.
+	 */
+	default void release() {}
+
+	/**
+	 * @return The number of versions removed from this repository so far, pulling
+	 *         a removed version returns <code>null</code>
+	 */
+	long getRemovals();
+
 	void push(Artifact a);
 
+	/**
+	 * Stores a new version of the artifact without propagating the change. The
+	 * change can be propagated later with {@link Main#onChange(Repository, Collection)}.
+	 * 
+	 * @param a The {@link Artifact} to store
+	 * @return The version of the stored artifact
+	 */
+	ArtifactVersion commit(Artifact a);
+
 	void push(Artifact... a);
 
+	/**
+	 * Commits all artifacts before their changes are propagated together, so that
+	 * the propagation of each change already sees all other versions.
+	 * 
+	 * @param artifacts The artifacts to push
+	 */
+	default void pushAll(Collection<? extends Artifact> artifacts) {
+		List<ArtifactVersion> committed = new ArrayList<>(artifacts.size());
+		for (Artifact a : artifacts) {
+			committed.add(commit(a));
+		}
+		Main.onChange(this, committed);
+	}
+
 }
\ No newline at end of file
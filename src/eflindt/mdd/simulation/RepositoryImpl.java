@@ -1,86 +1,393 @@
 package eflindt.mdd.simulation;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
+import eflindt.mdd.simulation.Artifact.ArtifactKind;
 import eflindt.mdd.simulation.Artifact.ArtifactVersion;
+import eflindt.mdd.simulation.PropagationEvents.QueryEvent;
 
 /**
  * An implementation of {@link Repository} that copies and increments the
  * version each time an artifact is pushed.
  * 
+ * All methods are thread safe. Change propagation is executed outside of the
+ * lock, so that steps executed by other threads can push concurrently.
+ * 
+ * Superseded versions can be removed according to a {@link RetentionPolicy} by
+ * calling {@link #compact(int)}. Compaction examines a bounded number of
+ * versions per call, so it can be interleaved with propagation. Pulling a
+ * removed version returns <code>null</code> like pulling an unknown version.
+ * 
+ * Each committed version is stored together with its commit sequence number.
+ * Snapshots share the stored versions and only hide versions committed after
+ * their sequence number, so they are cheap to create and can be read while
+ * pushes continue. A snapshot pins every version it shows until it is
+ * released, so a compaction never changes a live snapshot. A view created with
+ * {@link #asOf(long)} after a compaction shows the latest version of each name
+ * at its sequence number, but misses the superseded versions removed before it
+ * was created. States before the compaction horizon, the latest sequence
+ * number at which a removed version was still the latest one, can't be viewed
+ * anymore.
+ * 
+ * Plain artifacts can be kept in a {@link ColdStore} instead of the heap, only
+ * their versions and commit sequence numbers are kept in memory then. Pulling
+ * such an artifact reads it from the store, so queries that pull the same
+ * versions over and over should go through a {@link CachingRepository}.
+ * 
  * @author Eric Flindt
  *
  */
 public class RepositoryImpl implements Repository {
 
-	private Map<ArtifactVersion, Artifact> artifactsByVersion = new HashMap<>();
+	/**
+	 * The result of a compaction step.
+	 */
+	public static record CompactionResult(int examined, int removed, long reclaimedBytes) {}
+
+	// plain artifacts kept in the cold store only have an address
+	private static record Committed(Artifact artifact, long address, long sequence) {}
+
+	// a version that stopped being the latest of its name with the given commit
+	private static record Superseded(ArtifactVersion version, long sequence) {}
+
+	/**
+	 * The instances of a meta model. Queries share an immutable copy that is only
+	 * renewed after the instances have changed.
+	 */
+	private static final class Instances {
+
+		private final Set<ArtifactVersion> versions = new HashSet<>();
+
+		private Set<ArtifactVersion> published = Collections.emptySet();
+
+		private boolean changed;
+
+		// the highest commit sequence number of any instance
+		private long latest;
+
+		private synchronized void add(ArtifactVersion version, long sequence) {
+			versions.add(version);
+			changed = true;
+			latest = Math.max(latest, sequence);
+		}
+
+		private synchronized void remove(ArtifactVersion version) {
+			changed |= versions.remove(version);
+		}
+
+		private synchronized Set<ArtifactVersion> get() {
+			if (changed) {
+				published = Collections.unmodifiableSet(new HashSet<>(versions));
+				changed = false;
+			}
+			return published;
+		}
+
+		private synchronized long latest() {
+			return latest;
+		}
+
+	}
+
+	// rough estimates for a 64 bit JVM with compressed references
+	private static final long ARTIFACT_BYTES = 512;
+
+	private static final long DEPENDENCY_BYTES = 48;
+
+	private final Map<ArtifactVersion, Committed> artifactsByVersion = new ConcurrentHashMap<>();
+
+	private final Map<ArtifactVersion, Instances> instancesByMetamodel = new ConcurrentHashMap<>();
+
+	// the number of committed versions, published after a version has been stored
+	private volatile long sequence;
+
+	private final PropagationPlanner planner = new PropagationPlanner();
+
+	// null if all artifacts are kept on the heap
+	private final ColdStore coldStore;
+
+	private final RetentionPolicy retentionPolicy;
+
+	private final Map<String, ArtifactVersion> heads = new HashMap<>();
+
+	// the number of heads declaring a version as meta model, input or output
+	private final Map<ArtifactVersion, Integer> headReferences = new HashMap<>();
+
+	// superseded versions that have not been removed yet
+	private final Deque<Superseded> superseded = new ArrayDeque<>();
+
+	// unreleased snapshots, usually only those of the waves in progress
+	private final List<Snapshot> liveSnapshots = new ArrayList<>();
+
+	// released snapshots, reused so that a wave doesn't allocate its view
+	private final Deque<Snapshot> releasedSnapshots = new ArrayDeque<>();
+
+	// snapshots before this sequence number would miss removed versions
+	private long horizon;
+
+	// removed version numbers must not be reused by later pushes
+	private final Map<String, BitSet> removed = new HashMap<>();
+
+	private long reclaimedBytes;
+
+	private volatile long removals;
+
+	public RepositoryImpl() {
+		this(RetentionPolicy.KEEP_ALL);
+	}
+
+	/**
+	 * @param retentionPolicy The {@link RetentionPolicy} applied by
+	 *                        {@link #compact(int)}
+	 */
+	public RepositoryImpl(RetentionPolicy retentionPolicy) {
+		this(retentionPolicy, null);
+	}
+
+	/**
+	 * @param retentionPolicy The {@link RetentionPolicy} applied by
+	 *                        {@link #compact(int)}
+	 * @param coldStore       The {@link ColdStore} keeping the plain artifacts
+	 */
+	public RepositoryImpl(RetentionPolicy retentionPolicy, ColdStore coldStore) {
+		this.retentionPolicy = retentionPolicy;
+		this.coldStore = coldStore;
+	}
 
 	@Override
 	public Artifact pull(ArtifactVersion version) {
-		return artifactsByVersion.get(version);
+		return pull(version, Long.MAX_VALUE);
+	}
+
+	private Artifact pull(ArtifactVersion version, long watermark) {
+		QueryEvent event = PropagationEvents.beginQuery("pull", version);
+		Artifact artifact = null;
+		try {
+			artifact = lookup(version, watermark);
+			return artifact;
+		} finally {
+			PropagationEvents.endQuery(event, artifact == null ? 0 : 1);
+		}
+	}
+
+	private Artifact lookup(ArtifactVersion version, long watermark) {
+		Committed committed = version == null ? null : artifactsByVersion.get(version);
+		return committed == null || committed.sequence() > watermark ? null : materialize(committed);
+	}
+
+	private Artifact materialize(Committed committed) {
+		return committed.artifact() != null ? committed.artifact() : coldStore.read(committed.address());
 	}
 
 	@Override
 	public Set<ArtifactVersion> getInstances(ArtifactVersion version) {
-		return artifactsByVersion.values().stream()
-			// find any model that has declared the argument as meta model
-			.filter(m1 -> m1.getMetamodels().contains(version))
-			.map(Artifact::version)
-			.collect(Collectors.toSet());
+		return getInstances(version, Long.MAX_VALUE);
+	}
+
+	private Set<ArtifactVersion> getInstances(ArtifactVersion version, long watermark) {
+		QueryEvent event = PropagationEvents.beginQuery("getInstances", version);
+		Set<ArtifactVersion> instances = Collections.emptySet();
+		try {
+			Instances index = version == null ? null : instancesByMetamodel.get(version);
+			if (index != null) {
+				instances = index.get();
+				if (index.latest() > watermark) {
+					// only instances committed after the snapshot need to be hidden
+					instances = visible(instances, watermark);
+				}
+			}
+			return instances;
+		} finally {
+			PropagationEvents.endQuery(event, instances.size());
+		}
 	}
 
 	@Override
 	public Set<ArtifactVersion> getMetamodels(ArtifactVersion version) {
-		return Optional.ofNullable(version)
-			.map(artifactsByVersion::get)
-			.map(Artifact::getMetamodels)
-			.orElse(Collections.emptySet());
+		return getMetamodels(version, Long.MAX_VALUE);
+	}
+
+	private Set<ArtifactVersion> getMetamodels(ArtifactVersion version, long watermark) {
+		QueryEvent event = PropagationEvents.beginQuery("getMetamodels", version);
+		Set<ArtifactVersion> metamodels = Collections.emptySet();
+		try {
+			Artifact artifact = lookup(version, watermark);
+			if (artifact != null) {
+				metamodels = artifact.getMetamodels();
+			}
+			return metamodels;
+		} finally {
+			PropagationEvents.endQuery(event, metamodels.size());
+		}
 	}
 
 	@Override
 	public Set<ArtifactVersion> getInputs(ArtifactVersion version) {
-		return Optional.ofNullable(version)
-			.map(artifactsByVersion::get)
-			.map(Artifact::getInputs)
-			.orElse(Collections.emptySet());
+		return getInputs(version, Long.MAX_VALUE);
+	}
+
+	private Set<ArtifactVersion> getInputs(ArtifactVersion version, long watermark) {
+		QueryEvent event = PropagationEvents.beginQuery("getInputs", version);
+		Set<ArtifactVersion> inputs = Collections.emptySet();
+		try {
+			Artifact artifact = lookup(version, watermark);
+			if (artifact != null) {
+				inputs = artifact.getInputs();
+			}
+			return inputs;
+		} finally {
+			PropagationEvents.endQuery(event, inputs.size());
+		}
 	}
 
 	@Override
 	public Set<ArtifactVersion> getTransformations(ArtifactVersion version) {
-		return artifactsByVersion.values().stream()
-			// find any transformation that has declared the argument as an input and
-			// something as its output
-			.filter(t -> t.getInputs().contains(version) && !t.getOutputs().isEmpty())
-			.map(Artifact::version)
-			.collect(Collectors.toSet());
+		// any transformation that has declared the argument as an input and
+		// something as its output
+		return getPlan(version).transformations();
 	}
 
 	@Override
 	public Set<ArtifactVersion> getConsumers(ArtifactVersion version) {
-		return artifactsByVersion.values().stream()
-			// find any consumer that has declared the argument as an input and nothing as
-			// its output
-			.filter(t -> t.getInputs().contains(version) && t.getOutputs().isEmpty())
-			.map(Artifact::version)
-			.collect(Collectors.toSet());
+		// any consumer that has declared the argument as an input and nothing as
+		// its output
+		return getPlan(version).consumers();
+	}
+
+	@Override
+	public synchronized PropagationPlan getPlan(ArtifactVersion version) {
+		QueryEvent event = PropagationEvents.beginQuery("getPlan", version);
+		int size = 0;
+		try {
+			PropagationPlan plan = planner.getPlan(version);
+			size = plan.transformations().size() + plan.consumers().size();
+			return plan;
+		} finally {
+			PropagationEvents.endQuery(event, size);
+		}
+	}
+
+	private synchronized PropagationPlan getPlan(ArtifactVersion version, long watermark) {
+		QueryEvent event = PropagationEvents.beginQuery("getPlan", version);
+		int size = 0;
+		try {
+			PropagationPlan plan = planner.getPlan(version);
+			Set<ArtifactVersion> transformations = visible(plan.transformations(), watermark);
+			Set<ArtifactVersion> consumers = visible(plan.consumers(), watermark);
+			if (transformations != plan.transformations() || consumers != plan.consumers()) {
+				plan = new PropagationPlan(version, transformations, consumers, plan.cyclicTransformations());
+			}
+			size = transformations.size() + consumers.size();
+			return plan;
+		} finally {
+			PropagationEvents.endQuery(event, size);
+		}
+	}
+
+	private Set<ArtifactVersion> visible(Set<ArtifactVersion> versions, long watermark) {
+		boolean hidden = false;
+		for (ArtifactVersion version : versions) {
+			if (lookup(version, watermark) == null) {
+				hidden = true;
+				break;
+			}
+		}
+		if (!hidden) {
+			// the common case, the set can be shared
+			return versions;
+		}
+		Set<ArtifactVersion> visible = new HashSet<>();
+		for (ArtifactVersion version : versions) {
+			if (lookup(version, watermark) != null) {
+				visible.add(version);
+			}
+		}
+		return Collections.unmodifiableSet(visible);
+	}
+
+	@Override
+	public long getSequence() {
+		return sequence;
+	}
+
+	@Override
+	public synchronized Repository snapshot() {
+		return openSnapshot(sequence);
+	}
+
+	@Override
+	public synchronized Repository asOf(long sequence) {
+		if (sequence < 0 || sequence > this.sequence) {
+			throw new IllegalArgumentException(String.format("Sequence %s is not between 0 and %s", sequence,
+				this.sequence));
+		}
+		if (sequence < horizon) {
+			throw new IllegalArgumentException(String.format(
+				"Sequence %s is before the compaction horizon at %s, versions visible to it have been removed",
+				sequence, horizon));
+		}
+		return openSnapshot(sequence);
+	}
+
+	/**
+	 * @return The smallest sequence number that can still be viewed with
+	 *         {@link #asOf(long)}
+	 */
+	public synchronized long getHorizon() {
+		return horizon;
+	}
+
+	@Override
+	public long getRemovals() {
+		return removals;
 	}
 
 	@Override
 	public void push(Artifact a) {
-		ArtifactVersion version = a.version();
-		while (artifactsByVersion.containsKey(version)) {
-			version = version.increment();
+		Main.onChange(this, commit(a));
+	}
+
+	@Override
+	public ArtifactVersion commit(Artifact a) {
+		Artifact newVersion;
+		synchronized (this) {
+			ArtifactVersion version = a.version();
+			while (artifactsByVersion.containsKey(version) || isRemoved(version)) {
+				version = version.increment();
+			}
+			newVersion = Artifact.copyArtifact(a).withVersion(version).build();
+			if (coldStore != null && newVersion.kind() == ArtifactKind.ARTIFACT) {
+				artifactsByVersion.put(newVersion.version(), new Committed(null, coldStore.write(newVersion),
+					sequence + 1));
+			} else {
+				artifactsByVersion.put(newVersion.version(), new Committed(newVersion, -1, sequence + 1));
+			}
+			planner.register(newVersion);
+			for (ArtifactVersion metamodel : newVersion.getMetamodels()) {
+				instancesByMetamodel.computeIfAbsent(metamodel, m -> new Instances()).add(newVersion.version(),
+					sequence + 1);
+			}
+			// snapshots taken from now on can see the new version
+			sequence++;
+			if (retentionPolicy != RetentionPolicy.KEEP_ALL) {
+				updateHead(newVersion);
+			}
 		}
-		Artifact newVersion = Artifact.copyArtifact(a).withVersion(version).build();
-		artifactsByVersion.put(newVersion.version(), newVersion);
 		Main.log("[PUSH] " + newVersion);
-		Main.onChange(this, newVersion.version());
+		return newVersion.version();
 	}
 
 	@Override
@@ -88,4 +395,224 @@ public class RepositoryImpl implements Repository {
 		Arrays.asList(a).forEach(this::push);
 	}
 
+	private boolean isRemoved(ArtifactVersion version) {
+		BitSet versions = removed.get(version.name());
+		return versions != null && version.version() >= 0 && versions.get(version.version());
+	}
+
+	private void updateHead(Artifact artifact) {
+		ArtifactVersion previous = heads.get(artifact.version().name());
+		if (previous != null && previous.version() > artifact.version().version()) {
+			// a gap below the head has been filled
+			superseded.add(new Superseded(artifact.version(), sequence));
+			return;
+		}
+		heads.put(artifact.version().name(), artifact.version());
+		forEachDependency(artifact, d -> headReferences.merge(d, 1, Integer::sum));
+		if (previous != null) {
+			forEachDependency(materialize(artifactsByVersion.get(previous)), d -> headReferences.merge(d, -1,
+				(count, decrement) -> count + decrement == 0 ? null : count + decrement));
+			superseded.add(new Superseded(previous, sequence));
+		}
+	}
+
+	private static void forEachDependency(Artifact artifact, Consumer<ArtifactVersion> action) {
+		artifact.getMetamodels().forEach(action);
+		artifact.getInputs().forEach(action);
+		artifact.getOutputs().forEach(action);
+	}
+
+	/**
+	 * Examines up to the given number of superseded versions and removes those
+	 * that the {@link RetentionPolicy} doesn't retain and no live snapshot shows.
+	 * Retained and pinned versions are examined again by later calls, since they
+	 * might not be referenced or pinned anymore.
+	 * 
+	 * @param budget The maximum number of versions to examine
+	 * @return The {@link CompactionResult} of this step
+	 */
+	public synchronized CompactionResult compact(int budget) {
+		int examined = 0;
+		int removedVersions = 0;
+		long reclaimed = 0;
+		// each superseded version is examined at most once per call
+		int limit = Math.min(budget, superseded.size());
+		long pinned = latestPinnedSequence();
+		while (examined < limit) {
+			Superseded candidate = superseded.poll();
+			ArtifactVersion version = candidate.version();
+			examined++;
+			Committed committed = artifactsByVersion.get(version);
+			if (committed.sequence() <= pinned
+				|| retentionPolicy.retain(version, heads.get(version.name()), headReferences.containsKey(version))) {
+				superseded.add(candidate);
+				continue;
+			}
+			Artifact artifact = materialize(committed);
+			artifactsByVersion.remove(version);
+			planner.unregister(artifact);
+			for (ArtifactVersion metamodel : artifact.getMetamodels()) {
+				Instances index = instancesByMetamodel.get(metamodel);
+				if (index != null) {
+					index.remove(version);
+				}
+			}
+			if (version.version() >= 0) {
+				removed.computeIfAbsent(version.name(), n -> new BitSet()).set(version.version());
+			}
+			// snapshots before the version was superseded would miss it
+			horizon = Math.max(horizon, candidate.sequence());
+			removedVersions++;
+			reclaimed += ARTIFACT_BYTES + DEPENDENCY_BYTES
+				* (artifact.getMetamodels().size() + artifact.getInputs().size() + artifact.getOutputs().size());
+		}
+		reclaimedBytes += reclaimed;
+		removals += removedVersions;
+		if (removedVersions > 0) {
+			Main.log(String.format("[COMPACT] Removed %s of %s examined versions, reclaimed about %s bytes",
+				removedVersions, examined, reclaimed));
+		}
+		return new CompactionResult(examined, removedVersions, reclaimed);
+	}
+
+	// live snapshots show every version committed up to their sequence number
+	private long latestPinnedSequence() {
+		long pinned = -1;
+		for (Snapshot snapshot : liveSnapshots) {
+			pinned = Math.max(pinned, snapshot.watermark);
+		}
+		return pinned;
+	}
+
+	private Snapshot openSnapshot(long watermark) {
+		Snapshot snapshot = releasedSnapshots.poll();
+		if (snapshot == null) {
+			snapshot = new Snapshot();
+		}
+		snapshot.watermark = watermark;
+		snapshot.released = false;
+		liveSnapshots.add(snapshot);
+		return snapshot;
+	}
+
+	/**
+	 * @return The estimated number of bytes reclaimed by all compactions
+	 */
+	public synchronized long getReclaimedBytes() {
+		return reclaimedBytes;
+	}
+
+	/**
+	 * @return The number of stored versions
+	 */
+	public synchronized int size() {
+		return artifactsByVersion.size();
+	}
+
+	/**
+	 * A read only view of the repository hiding all versions committed after its
+	 * sequence number. Must be opened while holding the lock of the repository,
+	 * which also guards its fields. Released views are reused by later calls of
+	 * {@link #openSnapshot(long)}.
+	 */
+	private class Snapshot implements Repository {
+
+		private long watermark;
+
+		private boolean released;
+
+		@Override
+		public Artifact pull(ArtifactVersion version) {
+			return RepositoryImpl.this.pull(version, watermark);
+		}
+
+		@Override
+		public Set<ArtifactVersion> getInstances(ArtifactVersion version) {
+			return RepositoryImpl.this.getInstances(version, watermark);
+		}
+
+		@Override
+		public Set<ArtifactVersion> getMetamodels(ArtifactVersion version) {
+			return RepositoryImpl.this.getMetamodels(version, watermark);
+		}
+
+		@Override
+		public Set<ArtifactVersion> getInputs(ArtifactVersion version) {
+			return RepositoryImpl.this.getInputs(version, watermark);
+		}
+
+		@Override
+		public Set<ArtifactVersion> getTransformations(ArtifactVersion version) {
+			return getPlan(version).transformations();
+		}
+
+		@Override
+		public Set<ArtifactVersion> getConsumers(ArtifactVersion version) {
+			return getPlan(version).consumers();
+		}
+
+		@Override
+		public PropagationPlan getPlan(ArtifactVersion version) {
+			return RepositoryImpl.this.getPlan(version, watermark);
+		}
+
+		@Override
+		public long getSequence() {
+			return watermark;
+		}
+
+		@Override
+		public Repository snapshot() {
+			synchronized (RepositoryImpl.this) {
+				return openSnapshot(watermark);
+			}
+		}
+
+		@Override
+		public Repository asOf(long sequence) {
+			if (sequence > watermark) {
+				throw new IllegalArgumentException(String.format("Sequence %s is after the snapshot at %s", sequence,
+					watermark));
+			}
+			return RepositoryImpl.this.asOf(sequence);
+		}
+
+		@Override
+		public long getRemovals() {
+			return RepositoryImpl.this.getRemovals();
+		}
+
+		@Override
+		public void release() {
+			synchronized (RepositoryImpl.this) {
+				if (!released) {
+					released = true;
+					liveSnapshots.remove(this);
+					releasedSnapshots.push(this);
+				}
+			}
+		}
+
+		@Override
+		public void push(Artifact a) {
+			throw new UnsupportedOperationException("Snapshots are read only");
+		}
+
+		@Override
+		public ArtifactVersion commit(Artifact a) {
+			throw new UnsupportedOperationException("Snapshots are read only");
+		}
+
+		@Override
+		public void push(Artifact... a) {
+			throw new UnsupportedOperationException("Snapshots are read only");
+		}
+
+		@Override
+		public void pushAll(Collection<? extends Artifact> artifacts) {
+			throw new UnsupportedOperationException("Snapshots are read only");
+		}
+
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package eflindt.mdd.simulation;
+
+import eflindt.mdd.simulation.Artifact.ArtifactVersion;
+
+/**
+ * Decides which superseded versions a {@link RepositoryImpl} keeps when it is
+ * compacted. The latest version of each artifact, its head, is always kept.
+ */
+@FunctionalInterface
+public interface RetentionPolicy {
+
+	/**
+	 * Keeps every version ever pushed.
+	 */
+	public static final RetentionPolicy KEEP_ALL = (version, head, referencedByHead) -> true;
+
+	/**
+	 * @param version          A superseded version
+	 * @param head             The latest version with the same name
+	 * @param referencedByHead <code>true</code> if the version is declared as meta
+	 *                         model, input or output by the head of any artifact
+	 * @return <code>true</code> if the version must be kept
+	 */
+	boolean retain(ArtifactVersion version, ArtifactVersion head, boolean referencedByHead);
+
+	/**
+	 * @param count The number of versions to keep for each name, including the
+	 *              head
+	 * @return A {@link RetentionPolicy} keeping the latest versions of each name
+	 */
+	public static RetentionPolicy keepLast(int count) {
+		if (count < 1) {
+			throw new IllegalArgumentException("Count must be positive but was " + count);
+		}
+		return (version, head, referencedByHead) -> head.version() - version.version() < count;
+	}
+
+	/**
+	 * @return A {@link RetentionPolicy} keeping the versions that are still
+	 *         referenced by the head of any artifact
+	 */
+	public static RetentionPolicy keepReferenced() {
+		return (version, head, referencedByHead) -> referencedByHead;
+	}
+
+}
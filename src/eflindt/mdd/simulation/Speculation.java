@@ -0,0 +1,124 @@
+package eflindt.mdd.simulation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import eflindt.mdd.simulation.Artifact.ArtifactVersion;
+
+/**
+ * The propagation of a changed artifact whose transformations are executed
+ * before all consumers have approved the artifact.
+ * 
+ * Artifacts pushed to a {@link SpeculativeRepository} by a step of the
+ * speculation are staged instead of being committed. Once all consumers have
+ * approved, the staged artifacts are pushed in the order they were staged and
+ * later pushes of the steps are not staged anymore. If a consumer rejects the
+ * artifact, the staged artifacts and all later pushes of the steps are
+ * discarded.
+ */
+public class Speculation {
+
+	// the speculation of the step executed by the current thread
+	private static final ThreadLocal<Speculation> current = new ThreadLocal<>();
+
+	private final Repository repository;
+
+	private final ArtifactVersion changedArtifact;
+
+	private final List<List<Artifact>> staged = new ArrayList<>();
+
+	// null as long as the consumers are running
+	private Boolean approved;
+
+	/**
+	 * @param repository      The repository staged artifacts are pushed to on
+	 *                        approval
+	 * @param changedArtifact The artifact whose consumers are running
+	 */
+	public Speculation(Repository repository, ArtifactVersion changedArtifact) {
+		this.repository = repository;
+		this.changedArtifact = changedArtifact;
+	}
+
+	/**
+	 * @return The speculation of the step executed by the current thread, null if
+	 *         the step isn't speculative
+	 */
+	public static Speculation current() {
+		return current.get();
+	}
+
+	/**
+	 * Executes a step of this speculation.
+	 */
+	public void run(Runnable work) {
+		Speculation previous = current.get();
+		current.set(this);
+		try {
+			work.run();
+		} finally {
+			current.set(previous);
+		}
+	}
+
+	/**
+	 * @return true if the consumers are still running
+	 */
+	public synchronized boolean isPending() {
+		return approved == null;
+	}
+
+	/**
+	 * Stages artifacts pushed by a step of this speculation.
+	 * 
+	 * @param artifacts The pushed artifacts
+	 * @return false if the artifacts have not been staged or discarded and must
+	 *         be pushed as usual, because the consumers have already approved
+	 */
+	public synchronized boolean stage(Collection<? extends Artifact> artifacts) {
+		if (approved == null) {
+			staged.add(List.copyOf(artifacts));
+			return true;
+		}
+		return !approved;
+	}
+
+	/**
+	 * Pushes or discards the staged artifacts.
+	 * 
+	 * @param verdict true if all consumers approved the changed artifact
+	 */
+	public void resolve(boolean verdict) {
+		List<List<Artifact>> artifacts;
+		synchronized (this) {
+			if (approved != null) {
+				throw new IllegalStateException("Speculation of " + changedArtifact + " has already been resolved");
+			}
+			approved = verdict;
+			artifacts = new ArrayList<>(staged);
+			staged.clear();
+		}
+		int count = artifacts.stream().mapToInt(List::size).sum();
+		if (count == 0) {
+			return;
+		}
+		if (!verdict) {
+			Main.log(String.format("[SPECULATE] Discarding %s staged artifacts of %s", count, changedArtifact));
+			return;
+		}
+		if (Main.debug) {
+			Main.log(String.format("[SPECULATE] Committing %s staged artifacts of %s", count, changedArtifact));
+		}
+		// the staged artifacts are not part of any speculation, even if the
+		// consumers approved while a step of another speculation was executed
+		Speculation previous = current.get();
+		current.remove();
+		try {
+			artifacts.forEach(repository::pushAll);
+		} finally {
+			current.set(previous);
+		}
+	}
+
+}
@@ -0,0 +1,120 @@
+package eflindt.mdd.simulation;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import eflindt.mdd.simulation.Artifact.ArtifactVersion;
+
+/**
+ * A {@link Repository} that stages the artifacts pushed by steps of a
+ * {@link Speculation} until the speculation is resolved. All other pushes and
+ * all queries are forwarded to a backing repository, staged artifacts are not
+ * visible to queries.
+ * 
+ * Changes pushed through this repository are propagated with this repository,
+ * so that the pushes of the propagated steps are staged as well. If an
+ * executor is set, their transformations are executed speculatively: they
+ * don't wait for the consumers of the changed artifact, their pushes are
+ * staged instead. Changes pushed to any other repository are never propagated
+ * speculatively.
+ */
+public class SpeculativeRepository implements Repository {
+
+	private final Repository backingStore;
+
+	/**
+	 * @param backingStore The {@link Repository} artifacts are committed to
+	 */
+	public SpeculativeRepository(Repository backingStore) {
+		this.backingStore = backingStore;
+	}
+
+	@Override
+	public Artifact pull(ArtifactVersion version) {
+		return backingStore.pull(version);
+	}
+
+	@Override
+	public Set<ArtifactVersion> getInstances(ArtifactVersion version) {
+		return backingStore.getInstances(version);
+	}
+
+	@Override
+	public Set<ArtifactVersion> getMetamodels(ArtifactVersion version) {
+		return backingStore.getMetamodels(version);
+	}
+
+	@Override
+	public Set<ArtifactVersion> getInputs(ArtifactVersion version) {
+		return backingStore.getInputs(version);
+	}
+
+	@Override
+	public Set<ArtifactVersion> getTransformations(ArtifactVersion version) {
+		return backingStore.getTransformations(version);
+	}
+
+	@Override
+	public Set<ArtifactVersion> getConsumers(ArtifactVersion version) {
+		return backingStore.getConsumers(version);
+	}
+
+	@Override
+	public PropagationPlan getPlan(ArtifactVersion version) {
+		return backingStore.getPlan(version);
+	}
+
+	@Override
+	public long getSequence() {
+		return backingStore.getSequence();
+	}
+
+	@Override
+	public Repository snapshot() {
+		return backingStore.snapshot();
+	}
+
+	@Override
+	public Repository asOf(long sequence) {
+		return backingStore.asOf(sequence);
+	}
+
+	@Override
+	public long getRemovals() {
+		return backingStore.getRemovals();
+	}
+
+	@Override
+	public void push(Artifact a) {
+		Speculation speculation = Speculation.current();
+		if (speculation == null || !speculation.stage(List.of(a))) {
+			Main.onChange(this, commit(a));
+		}
+	}
+
+	@Override
+	public ArtifactVersion commit(Artifact a) {
+		Speculation speculation = Speculation.current();
+		if (speculation != null && speculation.isPending()) {
+			// the version is only assigned once the artifact is committed
+			throw new IllegalStateException("Artifacts can't be committed by a pending speculation, push them instead");
+		}
+		return backingStore.commit(a);
+	}
+
+	@Override
+	public void push(Artifact... a) {
+		Arrays.asList(a).forEach(this::push);
+	}
+
+	@Override
+	public void pushAll(Collection<? extends Artifact> artifacts) {
+		Speculation speculation = Speculation.current();
+		if (speculation == null || !speculation.stage(artifacts)) {
+			Repository.super.pushAll(artifacts);
+		}
+	}
+
+}
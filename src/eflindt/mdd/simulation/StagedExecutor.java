@@ -0,0 +1,189 @@
+package eflindt.mdd.simulation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import eflindt.mdd.simulation.Artifact.ArtifactVersion;
+
+/**
+ * A {@link PropagationExecutor} that routes each step into a pipeline stage,
+ * e.g. generate, build, deploy and consume.
+ * 
+ * Each stage executes its steps on a fixed number of workers and queues at
+ * most capacity steps. If the queue of a stage is full, the submitting thread
+ * blocks until the stage catches up, which throttles the upstream stage.
+ * 
+ * Stages submit to each other in both directions, e.g. consumers release the
+ * generators and generators submit consumers, so blocked workers could wait
+ * for each other forever. The workers of the stage that breaks cycles never
+ * block, if the queue of a stage is full they execute the step themselves. So
+ * every cycle of submissions between stages, including a stage that submits
+ * to itself, must pass through that stage, e.g. the stage of the generators
+ * that push the models of the next wave.
+ */
+public class StagedExecutor implements PropagationExecutor {
+
+	/**
+	 * The configuration of a pipeline stage.
+	 */
+	public static record Stage(String name, int workers, int capacity, boolean breaksCycles) {
+
+		public Stage(String name, int workers, int capacity) {
+			this(name, workers, capacity, false);
+		}
+
+	}
+
+	private static record StageExecutor(Stage stage, ThreadPoolExecutor executor, AtomicLong executed,
+		AtomicLong throttled, AtomicLong executedByCycleBreaker) {}
+
+	private final Map<String, StageExecutor> executors = new LinkedHashMap<>();
+
+	private final Function<Artifact, String> router;
+
+	// the stage of the current worker thread, null for other threads
+	private final ThreadLocal<Stage> currentStage = new ThreadLocal<>();
+
+	private final AtomicLong failures = new AtomicLong();
+
+	private final Object lock = new Object();
+
+	private int pending;
+
+	/**
+	 * @param router Maps a transformation or consumer to the name of its stage
+	 * @param stages The configuration of the stages
+	 */
+	public StagedExecutor(Function<Artifact, String> router, Stage... stages) {
+		this.router = router;
+		for (Stage stage : stages) {
+			AtomicInteger threads = new AtomicInteger();
+			// steps that don't fit into the queue are rejected by the executor and put into the queue by the submitter
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(stage.workers(), stage.workers(), 0L,
+				TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(stage.capacity()), r -> {
+					Thread thread = new Thread(() -> {
+						currentStage.set(stage);
+						r.run();
+					}, stage.name() + "-" + threads.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+			// steps put into the queue directly are only taken by running workers
+			executor.prestartAllCoreThreads();
+			executors.put(stage.name(), new StageExecutor(stage, executor, new AtomicLong(), new AtomicLong(),
+				new AtomicLong()));
+		}
+	}
+
+	@Override
+	public <T> CompletableFuture<T> submit(Artifact step, ArtifactVersion input, Supplier<T> work) {
+		String name = router.apply(step);
+		StageExecutor executor = executors.get(name);
+		if (executor == null) {
+			throw new IllegalArgumentException(String.format("No stage %s for step %s", name, step.version()));
+		}
+		CompletableFuture<T> result = new CompletableFuture<>();
+		synchronized (lock) {
+			pending++;
+		}
+		Runnable execution = () -> {
+			executor.executed().incrementAndGet();
+			try {
+				result.complete(work.get());
+			} catch (Throwable e) {
+				failures.incrementAndGet();
+				result.completeExceptionally(e);
+			} finally {
+				// dependent steps have been submitted when the result is completed
+				done();
+			}
+		};
+		try {
+			executor.executor().execute(execution);
+			return result;
+		} catch (RejectedExecutionException e) {
+			if (executor.executor().isShutdown()) {
+				fail(result, e);
+				return result;
+			}
+		}
+		// the queue is full
+		executor.throttled().incrementAndGet();
+		Stage current = currentStage.get();
+		if (current != null && current.breaksCycles()) {
+			executor.executedByCycleBreaker().incrementAndGet();
+			execution.run();
+			return result;
+		}
+		try {
+			executor.executor().getQueue().put(execution);
+			// the workers might have stopped while the submitter was blocked
+			if (executor.executor().isShutdown() && executor.executor().remove(execution)) {
+				fail(result, new RejectedExecutionException("Stage " + name + " has been shut down"));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			fail(result, e);
+		}
+		return result;
+	}
+
+	private void fail(CompletableFuture<?> result, Throwable e) {
+		failures.incrementAndGet();
+		result.completeExceptionally(e);
+		done();
+	}
+
+	private void done() {
+		synchronized (lock) {
+			if (--pending == 0) {
+				lock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Blocks until all submitted steps and the steps submitted by them have been
+	 * executed.
+	 * 
+	 * @throws InterruptedException If the waiting thread is interrupted
+	 */
+	public void awaitCompletion() throws InterruptedException {
+		synchronized (lock) {
+			while (pending > 0) {
+				lock.wait();
+			}
+		}
+	}
+
+	/**
+	 * Logs the number of executed and throttled steps for each stage and how
+	 * many of them were executed by the workers of the stage that breaks cycles.
+	 */
+	public void report() {
+		executors.values().forEach(e -> Main.log(String.format(
+			"[STAGE] %s: workers=%s; capacity=%s; executed=%s; throttled=%s; executedByCycleBreaker=%s",
+			e.stage().name(), e.stage().workers(), e.stage().capacity(), e.executed().get(), e.throttled().get(),
+			e.executedByCycleBreaker().get())));
+		if (failures.get() > 0) {
+			Main.log(String.format("[STAGE] %s steps failed", failures.get()));
+		}
+	}
+
+	/**
+	 * Stops the workers of all stages. Steps submitted afterwards fail.
+	 */
+	public void shutdown() {
+		executors.values().forEach(e -> e.executor().shutdown());
+	}
+
+}
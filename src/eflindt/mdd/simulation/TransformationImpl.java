@@ -1,5 +1,6 @@
 package eflindt.mdd.simulation;
 
+import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
 /**
@@ -12,9 +13,28 @@ public class TransformationImpl extends ArtifactImpl implements ModelTransformat
 	
 	private final Consumer<ArtifactVersion> transformation;
 	
+	// created once so that checking for a bulk transformation does not allocate
+	private final Optional<Consumer<Set<ArtifactVersion>>> bulkTransformation;
+	
+	// created once so that dispatching on the cost model does not allocate
+	private final Optional<CostModel> costModel;
+	
+	// created once so that down casting does not allocate
+	private final Optional<ModelTransformation> asTransformation = Optional.of(this);
+	
 	public TransformationImpl(ArtifactVersion version, Set<ArtifactVersion> metamodels, Set<ArtifactVersion> inputs, Set<ArtifactVersion> outputs, Consumer<ArtifactVersion> transformation) {
+		this(version, metamodels, inputs, outputs, transformation, null);
+	}
+	
+	public TransformationImpl(ArtifactVersion version, Set<ArtifactVersion> metamodels, Set<ArtifactVersion> inputs, Set<ArtifactVersion> outputs, Consumer<ArtifactVersion> transformation, CostModel costModel) {
+		this(version, metamodels, inputs, outputs, transformation, null, costModel);
+	}
+	
+	public TransformationImpl(ArtifactVersion version, Set<ArtifactVersion> metamodels, Set<ArtifactVersion> inputs, Set<ArtifactVersion> outputs, Consumer<ArtifactVersion> transformation, Consumer<Set<ArtifactVersion>> bulkTransformation, CostModel costModel) {
 		super(version, metamodels, inputs, outputs);
 		this.transformation = transformation;
+		this.bulkTransformation = Optional.ofNullable(bulkTransformation);
+		this.costModel = Optional.ofNullable(costModel);
 	}
 	
 	@Override
@@ -22,11 +42,45 @@ public class TransformationImpl extends ArtifactImpl implements ModelTransformat
 		return transformation;
 	}
 	
+	@Override
+	public Optional<Consumer<Set<ArtifactVersion>>> getBulkTransformation() {
+		return bulkTransformation;
+	}
+	
+	@Override
+	public Optional<CostModel> getCostModel() {
+		return costModel;
+	}
+	
 	@Override
 	public void accept(ArtifactVersion t) {
 		transformation.accept(t);
 	}
 	
+	@Override
+	public void acceptAll(Set<ArtifactVersion> instances) {
+		if (bulkTransformation.isEmpty()) {
+			instances.forEach(transformation);
+		} else {
+			bulkTransformation.get().accept(instances);
+		}
+	}
+	
+	@Override
+	public ArtifactKind kind() {
+		return ArtifactKind.TRANSFORMATION;
+	}
+	
+	@Override
+	public <R> R dispatch(ArtifactVisitor<R> visitor) {
+		return visitor.visitTransformation(this);
+	}
+	
+	@Override
+	public Optional<ModelTransformation> asTransformation() {
+		return asTransformation;
+	}
+	
 	@Override
 	public boolean equals(Object obj) {
 		return super.equals(obj);
@@ -47,6 +101,10 @@ public class TransformationImpl extends ArtifactImpl implements ModelTransformat
 		
 		private Consumer<ArtifactVersion> transformation;
 		
+		private Consumer<Set<ArtifactVersion>> bulkTransformation;
+		
+		private CostModel costModel;
+		
 		public TransformationBuilder(String name) {
 			this.version = new ArtifactVersion(name, 0);
 		}
@@ -60,6 +118,16 @@ public class TransformationImpl extends ArtifactImpl implements ModelTransformat
 			return this;
 		}
 		
+		public TransformationBuilder withBulkTransformation(Consumer<Set<ArtifactVersion>> bulkTransformation) {
+			this.bulkTransformation = bulkTransformation;
+			return this;
+		}
+		
+		public TransformationBuilder withCostModel(CostModel costModel) {
+			this.costModel = costModel;
+			return this;
+		}
+		
 		@Override
 		protected TransformationBuilder getThis() {
 			return this;
@@ -67,7 +135,7 @@ public class TransformationImpl extends ArtifactImpl implements ModelTransformat
 
 		@Override
 		public ModelTransformation build() {
-			return new TransformationImpl(version, metamodels, inputs, outputs, transformation);
+			return new TransformationImpl(version, metamodels, inputs, outputs, transformation, bulkTransformation, costModel);
 		}
 		
 	}
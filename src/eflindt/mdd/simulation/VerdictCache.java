@@ -0,0 +1,106 @@
+package eflindt.mdd.simulation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import eflindt.mdd.simulation.Artifact.ArtifactVersion;
+import eflindt.mdd.simulation.PropagationEvents.ConsumerVerdictEvent;
+
+/**
+ * A size bounded cache of consumer verdicts, keyed by the version of the
+ * consumer and the version of the consumed artifact. Since artifacts are
+ * immutable, a verdict can only change if a new version of the consumer is
+ * pushed, which invalidates all verdicts of the previous versions.
+ * 
+ * The least recently used verdict is evicted once the maximum size is reached.
+ * The cache is thread safe, consumers are executed outside of its lock. If
+ * several threads request the same verdict at once, the consumer is only
+ * executed by the first one.
+ */
+public class VerdictCache {
+
+	private static record Key(ArtifactVersion consumer, ArtifactVersion artifact) {}
+
+	private final Map<Key, CompletableFuture<Boolean>> verdicts;
+
+	public VerdictCache(int maximumSize) {
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("Maximum size must be positive but was " + maximumSize);
+		}
+		this.verdicts = new LinkedHashMap<>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, CompletableFuture<Boolean>> eldest) {
+				return size() > maximumSize;
+			}
+
+		};
+	}
+
+	/**
+	 * Returns the cached verdict of the consumer or executes the consumer if no
+	 * verdict is cached.
+	 * 
+	 * @param consumer The {@link ModelConsumer}
+	 * @param artifact The consumed artifact
+	 * @return The verdict of the consumer
+	 */
+	public boolean test(ModelConsumer consumer, ArtifactVersion artifact) {
+		ConsumerVerdictEvent event = PropagationEvents.beginVerdict(consumer, artifact);
+		Key key = new Key(consumer.version(), artifact);
+		CompletableFuture<Boolean> verdict;
+		boolean computing = false;
+		boolean result = false;
+		try {
+			synchronized (verdicts) {
+				verdict = verdicts.get(key);
+				if (verdict == null) {
+					verdict = new CompletableFuture<>();
+					verdicts.put(key, verdict);
+					computing = true;
+				}
+			}
+			if (computing) {
+				try {
+					verdict.complete(consumer.test(artifact));
+				} catch (RuntimeException e) {
+					synchronized (verdicts) {
+						verdicts.remove(key);
+					}
+					verdict.completeExceptionally(e);
+					throw e;
+				}
+			}
+			result = verdict.join();
+			return result;
+		} finally {
+			// a failing consumer must not leave its verdict as the parent of later events
+			PropagationEvents.endVerdict(event, result, !computing);
+		}
+	}
+
+	/**
+	 * Removes the verdicts of all previous versions of the consumer.
+	 * 
+	 * @param consumer The new version of a consumer
+	 */
+	public void invalidate(ArtifactVersion consumer) {
+		synchronized (verdicts) {
+			verdicts.keySet().removeIf(k -> k.consumer().name().equals(consumer.name())
+				&& k.consumer().version() < consumer.version());
+		}
+	}
+
+	/**
+	 * @return The number of cached verdicts
+	 */
+	public int size() {
+		synchronized (verdicts) {
+			return verdicts.size();
+		}
+	}
+
+}